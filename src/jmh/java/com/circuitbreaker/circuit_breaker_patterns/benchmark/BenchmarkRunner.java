@@ -0,0 +1,36 @@
+package com.circuitbreaker.circuit_breaker_patterns.benchmark;
+
+import org.openjdk.jmh.profile.*;
+import org.openjdk.jmh.results.*;
+import org.openjdk.jmh.results.format.*;
+import org.openjdk.jmh.runner.*;
+import org.openjdk.jmh.runner.options.*;
+
+import java.io.*;
+import java.util.*;
+
+// Runs the benchmarks once per thread count (-Djmh.threads=1,4,16,64) with the GC profiler, so every
+// result carries ops/s and gc.alloc.rate(.norm). Any JMH command line option can be passed as arguments.
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        String includes = commandLineOptions.getIncludes().isEmpty()
+                ? CircuitBreakerServiceBenchmark.class.getSimpleName()
+                : String.join("|", commandLineOptions.getIncludes());
+        new File("target/jmh").mkdirs();
+
+        for (String threads : System.getProperty("jmh.threads", "1,4,16,64").split(",")) {
+            Options options = new OptionsBuilder()
+                    .parent(commandLineOptions)
+                    .include(includes)
+                    .threads(Integer.parseInt(threads.trim()))
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("target/jmh/result-threads-" + threads.trim() + ".json")
+                    .build();
+            Collection<RunResult> results = new Runner(options).run();
+            System.out.printf("Finished %d benchmarks with %s thread(s)%n", results.size(), threads.trim());
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.circuitbreaker.circuit_breaker_patterns.benchmark;
+
+import com.circuitbreaker.circuit_breaker_patterns.config.CircuitBrakerProperties;
+import com.circuitbreaker.circuit_breaker_patterns.enums.*;
+import com.circuitbreaker.circuit_breaker_patterns.service.impl.*;
+import io.github.resilience4j.bulkhead.*;
+import io.github.resilience4j.circuitbreaker.*;
+import io.github.resilience4j.timelimiter.*;
+import io.micrometer.core.instrument.simple.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+// Overhead of CircuitBreakerServiceImpl.executeWithCircuitBreaker per breaker state, for a succeeding
+// operation and for an operation that fails every other call and then ends in the fallback.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CircuitBreakerServiceBenchmark {
+
+    private static final ServiceType SERVICE = ServiceType.PAYMENT_SERVICE;
+    private static final Map<String, Object> RESULT = Map.of("status", "completed");
+    private static final Map<String, Object> FALLBACK_RESULT = Map.of("status", "pending", "fallback", true);
+    private static final RuntimeException FAILURE = new RuntimeException("Simulated failure");
+
+    private static final Supplier<Map<String, Object>> SUCCESS = () -> RESULT;
+    private static final Supplier<Map<String, Object>> FALLBACK = () -> FALLBACK_RESULT;
+
+    // Each thread alternates failure/success, so no 100-call window can reach the 100% failure threshold
+    // and CLOSED stays CLOSED while half of the calls take the fallback path
+    @State(Scope.Thread)
+    public static class FailingOperation {
+        private int calls;
+        private final Supplier<Map<String, Object>> operation = () -> {
+            if ((++calls & 1) == 1) {
+                throw FAILURE;
+            }
+            return RESULT;
+        };
+    }
+
+    @Param({"CLOSED", "OPEN", "HALF_OPEN"})
+    public String state;
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    public ExecutorMode executorMode;
+
+    private CircuitBreakerServiceImpl circuitBreakerService;
+    private GuardedCallExecutor guardedCallExecutor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        CircuitBrakerProperties.ServiceConfig config = new CircuitBrakerProperties.ServiceConfig();
+        config.setFailureRateThreshold(100);
+        config.setSlidingWindowSize(100);
+        config.setMinimumNumberOfCalls(100);
+        config.setWaitDurationInOpenState(Duration.ofHours(1));
+        config.setAutomaticTransitionFromOpenToHalfOpenEnabled(false);
+        // HALF_OPEN lasts until this many probe calls are recorded; the state is re-applied every iteration
+        config.setPermittedNumberOfCallsInHalfOpenState(1_000_000);
+        config.setTimeoutDuration(Duration.ofSeconds(5));
+
+        CircuitBrakerProperties properties = new CircuitBrakerProperties();
+        properties.getServices().put(SERVICE.getServiceName(), config);
+        properties.getExecutor().setMode(executorMode);
+
+        guardedCallExecutor = new GuardedCallExecutor(properties);
+        circuitBreakerService = new CircuitBreakerServiceImpl(
+                properties,
+                CircuitBreakerRegistry.ofDefaults(),
+                TimeLimiterRegistry.ofDefaults(),
+                BulkheadRegistry.ofDefaults(),
+                ThreadPoolBulkheadRegistry.ofDefaults(),
+                guardedCallExecutor,
+                new FallbackEventLogger(Duration.ofSeconds(10)),
+                new GuardedCallMetrics(new SimpleMeterRegistry()),
+                new RetryBudget(properties));
+    }
+
+    @Setup(Level.Iteration)
+    public void applyState() {
+        circuitBreakerService.forceCircuitBreakerState(SERVICE, "CLOSED");
+        circuitBreakerService.resetCircuitBreaker(SERVICE);
+        if (!"CLOSED".equals(state)) {
+            circuitBreakerService.forceCircuitBreakerState(SERVICE, "OPEN");
+            circuitBreakerService.forceCircuitBreakerState(SERVICE, state);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        circuitBreakerService.closeThreadPoolBulkheads();
+        guardedCallExecutor.shutdown();
+    }
+
+    @Benchmark
+    public Map<String, Object> success() {
+        return circuitBreakerService.executeWithCircuitBreaker(SERVICE, SUCCESS, FALLBACK);
+    }
+
+    @Benchmark
+    public Map<String, Object> fallback(FailingOperation failing) {
+        return circuitBreakerService.executeWithCircuitBreaker(SERVICE, failing.operation, FALLBACK);
+    }
+}
@@ -2,8 +2,10 @@ package com.circuitbreaker.circuit_breaker_patterns;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class CircuitBreakerPatternsApplication {
 
 	public static void main(String[] args) {
@@ -1,5 +1,6 @@
 package com.circuitbreaker.circuit_breaker_patterns.config;
 
+import com.circuitbreaker.circuit_breaker_patterns.enums.*;
 import lombok.*;
 import org.springframework.boot.context.properties.*;
 import org.springframework.stereotype.*;
@@ -12,17 +13,66 @@ import java.util.*;
 @ConfigurationProperties(prefix = "circuit-breaker")
 public class CircuitBrakerProperties {
 
-    private Map<String, ServiceConfig> services = new java.util.HashMap<>();
+    // Concurrent: hot reload replaces entries while guarded calls read them
+    private Map<String, ServiceConfig> services = new java.util.concurrent.ConcurrentHashMap<>();
+    // Settings for services without an entry of their own (or of their family, see resolve)
+    private ServiceConfig defaults = new ServiceConfig();
+    private RegistryConfig registry = new RegistryConfig();
+    private RetryBudgetConfig retryBudget = new RetryBudgetConfig();
+    private ClusterConfig cluster = new ClusterConfig();
+    private ExecutorConfig executor = new ExecutorConfig();
+
+    // Exact service name first, then the family before the first ':' (payment-service:tenant-42 -> payment-service)
+    public ServiceConfig resolve(String serviceName) {
+        ServiceConfig config = services.get(serviceName);
+        if (config != null) {
+            return config;
+        }
+        int separator = serviceName.indexOf(':');
+        if (separator > 0) {
+            config = services.get(serviceName.substring(0, separator));
+            if (config != null) {
+                return config;
+            }
+        }
+        return defaults;
+    }
+
+    @Data
+    public static class RegistryConfig {
+        // Breakers of services not listed under services are dropped after this long without calls
+        private java.time.Duration idleTimeout = java.time.Duration.ofMinutes(10);
+        private java.time.Duration sweepInterval = java.time.Duration.ofMinutes(1);
+        // Beyond this many breakers the least recently used idle ones are dropped at the next sweep
+        private int maxServices = 10_000;
+    }
+
+    @Data
+    public static class ExecutorConfig {
+        private ExecutorMode mode = ExecutorMode.PLATFORM;
+    }
 
     @Data
     public static class ServiceConfig {
         private int failureRateThreshold = 50;
         private java.time.Duration waitDurationInOpenState = java.time.Duration.ofSeconds(60);
+        private SlidingWindowType slidingWindowType = SlidingWindowType.COUNT_BASED;
         private int slidingWindowSize = 10;
         private int minimumNumberOfCalls = 5;
+        // Calls slower than this count as slow; the breaker opens once their share reaches slow-call-rate-threshold
+        private java.time.Duration slowCallDurationThreshold = java.time.Duration.ofSeconds(60);
+        private int slowCallRateThreshold = 100;
         private java.time.Duration timeoutDuration = java.time.Duration.ofSeconds(2);
         private boolean automaticTransitionFromOpenToHalfOpenEnabled = true;
         private int permittedNumberOfCallsInHalfOpenState = 2;
+        // Upper bound on operations of this service running at once on the guarded executor, 0 = unbounded
+        private int maxConcurrentExecutions = 0;
+        private BulkheadConfig bulkhead = new BulkheadConfig();
+        private RetryConfig retry = new RetryConfig();
+        private HedgingConfig hedging = new HedgingConfig();
+        private ConnectionPoolConfig connectionPool = new ConnectionPoolConfig();
+        private ConcurrencyLimitConfig concurrencyLimit = new ConcurrencyLimitConfig();
+        private AdaptiveConfig adaptive = new AdaptiveConfig();
 
         public int getFailureRateThreshold() { return failureRateThreshold; }
         public java.time.Duration getWaitDurationInOpenState() { return waitDurationInOpenState; }
@@ -33,4 +83,118 @@ public class CircuitBrakerProperties {
         public int getPermittedNumberOfCallsInHalfOpenState() { return permittedNumberOfCallsInHalfOpenState; }
     }
 
+    @Data
+    public static class BulkheadConfig {
+        private BulkheadType type = BulkheadType.NONE;
+        // SEMAPHORE
+        private int maxConcurrentCalls = 25;
+        private java.time.Duration maxWaitDuration = java.time.Duration.ZERO;
+        // THREADPOOL
+        private int maxThreadPoolSize = 10;
+        private int coreThreadPoolSize = 5;
+        private int queueCapacity = 50;
+    }
+
+    // Retries run inside the breaker permission: the breaker records one outcome per call, each attempt has its own timeout
+    @Data
+    public static class RetryConfig {
+        // Attempts per call including the first one, 1 = no retries
+        private int maxAttempts = 1;
+        private java.time.Duration initialBackoff = java.time.Duration.ofMillis(100);
+        private double backoffMultiplier = 2.0;
+        private java.time.Duration maxBackoff = java.time.Duration.ofSeconds(1);
+        // Each wait is randomized by up to this fraction either way, so callers failing together do not retry together
+        private double jitter = 0.5;
+        // A failure is retried when it, or one of its causes, is an instance of one of these
+        private List<Class<? extends Throwable>> retryExceptions = new ArrayList<>(List.of(
+                java.io.IOException.class,
+                org.springframework.web.reactive.function.client.WebClientRequestException.class));
+    }
+
+    // Reactor Netty pool of the service's WebClient; read once at startup, a reload does not resize it
+    @Data
+    public static class ConnectionPoolConfig {
+        private int maxConnections = 50;
+        // Requests queued for a connection beyond this fail right away instead of waiting
+        private int pendingAcquireMaxCount = 200;
+        private java.time.Duration pendingAcquireTimeout = java.time.Duration.ofSeconds(1);
+        // Keep below the upstream's keep-alive timeout, so the pool closes idle connections before the server does
+        private java.time.Duration maxIdleTime = java.time.Duration.ofSeconds(30);
+        private java.time.Duration maxLifeTime = java.time.Duration.ofMinutes(5);
+        private java.time.Duration evictionInterval = java.time.Duration.ofSeconds(10);
+        private java.time.Duration connectTimeout = java.time.Duration.ofSeconds(1);
+        // Negotiated through ALPN for https base URLs, plain http stays on HTTP/1.1
+        private boolean http2 = true;
+    }
+
+    // Only applied where a call site asks for it (RequestHedger), for idempotent reads
+    @Data
+    public static class HedgingConfig {
+        private boolean enabled = false;
+        // A second attempt starts when the first has not answered after this latency percentile of recent attempts
+        private double delayPercentile = 0.95;
+        private java.time.Duration minDelay = java.time.Duration.ofMillis(20);
+        // Upper bound of the delay, and the delay used until enough attempts have been timed
+        private java.time.Duration maxDelay = java.time.Duration.ofMillis(500);
+        // Hedges per call over the last 10 seconds; the percentile alone would already hedge about 1 - delay-percentile
+        private double maxHedgeRatio = 0.1;
+    }
+
+    // Calls in flight to the service, adjusted to its latency (see AdaptiveConcurrencyLimit). Calls over the limit
+    // go to the fallback right away.
+    @Data
+    public static class ConcurrencyLimitConfig {
+        private boolean enabled = false;
+        private int initialLimit = 20;
+        private int minLimit = 2;
+        private int maxLimit = 200;
+        // Latency may grow to this multiple of the long-term average before the limit shrinks
+        private double rttTolerance = 1.5;
+        // Weight of each new limit estimate, higher reacts faster but oscillates more
+        private double smoothing = 0.2;
+    }
+
+    // Shared by all services: retries may add at most ratio x calls (plus the floor) over the last 10 seconds
+    @Data
+    public static class RetryBudgetConfig {
+        private double ratio = 0.1;
+        // Lets low-traffic services retry at all
+        private int minRetriesPerSecond = 5;
+    }
+
+    // Breaker state shared between application instances (see ClusterStateSync)
+    @Data
+    public static class ClusterConfig {
+        private boolean enabled = false;
+        private ClusterTransportType transport = ClusterTransportType.UDP;
+        // Random per start when blank
+        private String nodeId = "";
+        // IN_PROCESS only: nodes of the same group see each other
+        private String group = "default";
+        // UDP only: local address and port, and the other instances as host:port; datagrams from anywhere else are dropped
+        private String bindAddress = "127.0.0.1";
+        private int port = 7946;
+        private List<String> peers = new ArrayList<>();
+        // UDP only, required: shared by all nodes, every message carries an HMAC-SHA256 under it
+        private String secret = "";
+        // Failure counts are gossiped this often; state changes are sent at once
+        private java.time.Duration heartbeatInterval = java.time.Duration.ofMillis(500);
+        // Counts of a peer that has not been heard from for this long no longer count
+        private java.time.Duration peerTtl = java.time.Duration.ofSeconds(3);
+    }
+
+    @Data
+    public static class AdaptiveConfig {
+        private boolean enabled = false;
+        // The sliding window is sized to hold roughly this much traffic at the observed request rate
+        private java.time.Duration windowSpan = java.time.Duration.ofSeconds(30);
+        private int minSlidingWindowSize = 10;
+        private int maxSlidingWindowSize = 200;
+        // Failure threshold at the smallest window, tightening to failure-rate-threshold at the largest
+        private int maxFailureRateThreshold = 80;
+        // Slow-call duration = baseline p99 latency x multiplier, between min-slow-call-duration and timeout-duration
+        private double slowCallLatencyMultiplier = 3.0;
+        private java.time.Duration minSlowCallDuration = java.time.Duration.ofMillis(100);
+    }
+
 }
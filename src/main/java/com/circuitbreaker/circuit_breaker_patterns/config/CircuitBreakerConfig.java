@@ -1,6 +1,10 @@
 package com.circuitbreaker.circuit_breaker_patterns.config;
 
+import io.github.resilience4j.bulkhead.*;
 import io.github.resilience4j.circuitbreaker.*;
+import io.github.resilience4j.micrometer.tagged.*;
+import io.github.resilience4j.timelimiter.*;
+import io.micrometer.core.instrument.binder.*;
 import org.springframework.context.annotation.*;
 
 @Configuration
@@ -10,4 +14,34 @@ public class CircuitBreakerConfig {
     public CircuitBreakerRegistry circuitBreakerRegistry() {
         return CircuitBreakerRegistry.ofDefaults();
     }
+
+    @Bean
+    public TimeLimiterRegistry timeLimiterRegistry() {
+        return TimeLimiterRegistry.ofDefaults();
+    }
+
+    @Bean
+    public BulkheadRegistry bulkheadRegistry() {
+        return BulkheadRegistry.ofDefaults();
+    }
+
+    @Bean
+    public ThreadPoolBulkheadRegistry threadPoolBulkheadRegistry() {
+        return ThreadPoolBulkheadRegistry.ofDefaults();
+    }
+
+    // Exposes resilience4j_circuitbreaker_* state, failure rate and call gauges through actuator
+    @Bean
+    public MeterBinder circuitBreakerMetrics(CircuitBreakerRegistry circuitBreakerRegistry) {
+        return meterRegistry -> TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakerRegistry).bindTo(meterRegistry);
+    }
+
+    // Exposes resilience4j_bulkhead_* gauges (available/max concurrent calls, queue depth) through actuator
+    @Bean
+    public MeterBinder bulkheadMetrics(BulkheadRegistry bulkheadRegistry, ThreadPoolBulkheadRegistry threadPoolBulkheadRegistry) {
+        return meterRegistry -> {
+            TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheadRegistry).bindTo(meterRegistry);
+            TaggedThreadPoolBulkheadMetrics.ofThreadPoolBulkheadRegistry(threadPoolBulkheadRegistry).bindTo(meterRegistry);
+        };
+    }
 }
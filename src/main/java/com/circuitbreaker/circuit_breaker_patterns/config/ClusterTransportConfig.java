@@ -0,0 +1,22 @@
+package com.circuitbreaker.circuit_breaker_patterns.config;
+
+import com.circuitbreaker.circuit_breaker_patterns.service.*;
+import com.circuitbreaker.circuit_breaker_patterns.service.impl.*;
+import org.springframework.boot.autoconfigure.condition.*;
+import org.springframework.context.annotation.*;
+
+@Configuration
+@ConditionalOnProperty(prefix = "circuit-breaker.cluster", name = "enabled", havingValue = "true")
+public class ClusterTransportConfig {
+
+    // Closed by ClusterStateSync
+    @Bean(destroyMethod = "")
+    public ClusterTransport clusterTransport(CircuitBrakerProperties properties) {
+        CircuitBrakerProperties.ClusterConfig cluster = properties.getCluster();
+        return switch (cluster.getTransport()) {
+            case UDP -> new UdpClusterTransport(cluster.getBindAddress(), cluster.getPort(), cluster.getPeers(),
+                    cluster.getSecret());
+            case IN_PROCESS -> new InProcessClusterTransport(cluster.getGroup());
+        };
+    }
+}
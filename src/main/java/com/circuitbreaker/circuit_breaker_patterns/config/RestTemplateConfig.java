@@ -1,17 +1,70 @@
 package com.circuitbreaker.circuit_breaker_patterns.config;
 
+import com.circuitbreaker.circuit_breaker_patterns.enums.*;
+import io.netty.channel.*;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.*;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.*;
+import reactor.netty.http.client.*;
+import reactor.netty.resources.*;
+
+import java.time.*;
 
 @Configuration
 public class RestTemplateConfig {
 
+    // Pool gauges (reactor.netty.connection.provider.*: total, active, idle and pending connections) are published
+    // through the global Micrometer registry, which Spring Boot exports with its own
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider userServiceConnectionProvider(CircuitBrakerProperties circuitBrakerProperties) {
+        return connectionProvider(ServiceType.USER_SERVICE.getServiceName(), circuitBrakerProperties.resolve(ServiceType.USER_SERVICE.getServiceName()));
+    }
+
     @Bean
-    public WebClient webClient(@Value("${external-api.base-url:https://jsonplaceholder.typicode.com}") String baseUrl) {
+    public WebClient webClient(@Value("${external-api.base-url:https://jsonplaceholder.typicode.com}") String baseUrl,
+                               ConnectionProvider userServiceConnectionProvider,
+                               CircuitBrakerProperties circuitBrakerProperties) {
+        CircuitBrakerProperties.ServiceConfig config = circuitBrakerProperties.resolve(ServiceType.USER_SERVICE.getServiceName());
         return WebClient.builder()
                 .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient(userServiceConnectionProvider, config, baseUrl)))
+                .build();
+    }
+
+    private ConnectionProvider connectionProvider(String serviceName, CircuitBrakerProperties.ServiceConfig config) {
+        CircuitBrakerProperties.ConnectionPoolConfig pool = config.getConnectionPool();
+        return ConnectionProvider.builder(serviceName)
+                .maxConnections(pool.getMaxConnections())
+                .pendingAcquireMaxCount(pool.getPendingAcquireMaxCount())
+                // Waiting for a connection longer than the call may take is pointless
+                .pendingAcquireTimeout(min(pool.getPendingAcquireTimeout(), config.getTimeoutDuration()))
+                .maxIdleTime(pool.getMaxIdleTime())
+                .maxLifeTime(pool.getMaxLifeTime())
+                .evictInBackground(pool.getEvictionInterval())
+                // Most recently used first: the hot connections stay warm, the surplus ages out through max-idle-time
+                .lifo()
+                .metrics(true)
                 .build();
     }
+
+    // Timeouts end at the service's timeout-duration: the time limiter gives up then, and the connection (or stream)
+    // is released at the same time instead of staying busy with a response nobody waits for
+    private HttpClient httpClient(ConnectionProvider connectionProvider, CircuitBrakerProperties.ServiceConfig config, String baseUrl) {
+        CircuitBrakerProperties.ConnectionPoolConfig pool = config.getConnectionPool();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) min(pool.getConnectTimeout(), config.getTimeoutDuration()).toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .responseTimeout(config.getTimeoutDuration());
+        if (pool.isHttp2() && baseUrl.startsWith("https:")) {
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+        }
+        return httpClient;
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
 }
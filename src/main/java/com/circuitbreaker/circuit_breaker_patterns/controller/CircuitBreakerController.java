@@ -2,6 +2,7 @@ package com.circuitbreaker.circuit_breaker_patterns.controller;
 
 import com.circuitbreaker.circuit_breaker_patterns.enums.*;
 import com.circuitbreaker.circuit_breaker_patterns.service.*;
+import com.circuitbreaker.circuit_breaker_patterns.service.impl.*;
 import lombok.*;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
@@ -14,41 +15,43 @@ import java.util.*;
 public class CircuitBreakerController {
 
     private final CircuitBreakerService circuitBreakerService;
+    private final CircuitBreakerConfigReloader circuitBreakerConfigReloader;
 
     @GetMapping("/{serviceType}/state")
-    public ResponseEntity<Map<String, String>> getCircuitBreakerState(@PathVariable String serviceType) {
-        try {
-            ServiceType type = ServiceType.valueOf(serviceType.toUpperCase());
-            String state = circuitBreakerService.getCircuitBreakerState(type);
-            return ResponseEntity.ok(Map.of(
-                    "serviceType", type.getServiceName(),
-                    "state", state
-            ));
-        } catch (IllegalArgumentException e) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of(
-                    "error", "Invalid service type: " + serviceType
+    public ResponseEntity<Map<String, Object>> getCircuitBreakerState(@PathVariable String serviceType) {
+        String serviceName = resolveServiceName(serviceType);
+        if (serviceName == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(
+                    "error", "Unknown service: " + serviceType
             ));
         }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("serviceType", serviceName);
+        body.putAll(circuitBreakerService.getCircuitBreakerDetails(serviceName));
+        return ResponseEntity.ok(body);
     }
 
     @PostMapping("/{serviceType}/reset")
     public ResponseEntity<Map<String, String>> resetCircuitBreaker(@PathVariable String serviceType) {
-        try {
-            ServiceType type = ServiceType.valueOf(serviceType.toUpperCase());
-            circuitBreakerService.resetCircuitBreaker(type);
-            return ResponseEntity.ok(Map.of("serviceType", type.getServiceName(), "status", "reset"));
-        } catch (IllegalArgumentException e) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of(
-                    "error", "Invalid service type: " + serviceType
+        String serviceName = resolveServiceName(serviceType);
+        if (serviceName == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(
+                    "error", "Unknown service: " + serviceType
             ));
         }
+        circuitBreakerService.resetCircuitBreaker(serviceName);
+        return ResponseEntity.ok(Map.of("serviceType", serviceName, "status", "reset"));
     }
 
     @PostMapping("/{serviceType}/force/{state}")
     public ResponseEntity<Map<String, String>> forceCircuitBreakerState(@PathVariable String serviceType, @PathVariable String state) {
+        String serviceName = resolveServiceName(serviceType);
+        if (serviceName == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(
+                    "error", "Unknown service: " + serviceType
+            ));
+        }
         try {
-            ServiceType type = ServiceType.valueOf(serviceType.toUpperCase());
-
             // Validate state
             String normalized = state.toUpperCase().replace('-', '_');
             if (!Set.of("OPEN", "CLOSED", "HALF_OPEN").contains(normalized)) {
@@ -57,12 +60,8 @@ public class CircuitBreakerController {
                 ));
             }
 
-            circuitBreakerService.forceCircuitBreakerState(type, normalized);
-            return ResponseEntity.ok(Map.of("serviceType", type.getServiceName(), "status", normalized));
-        } catch (IllegalArgumentException e) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of(
-                    "error", "Invalid service type or state: " + serviceType + " / " + state
-            ));
+            circuitBreakerService.forceCircuitBreakerState(serviceName, normalized);
+            return ResponseEntity.ok(Map.of("serviceType", serviceName, "status", normalized));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
                     "error", "Failed to force state: " + e.getMessage()
@@ -70,14 +69,21 @@ public class CircuitBreakerController {
         }
     }
 
+    // Invalid configuration is rejected with 400 by GlobalExceptionHandler, the running breakers are left untouched
+    @PostMapping("/config/reload")
+    public ResponseEntity<Map<String, Object>> reloadConfig() {
+        return ResponseEntity.ok(Map.of("status", "reloaded", "changed", circuitBreakerConfigReloader.reload()));
+    }
+
+    // The original shape: the built-in services keyed by enum name (USER_SERVICE). Services named at runtime are
+    // only listed by /v2/states.
     @PostMapping("/states")
-    public ResponseEntity<Map<String, String>> getAllCircuitBreakerStates() {
+    public ResponseEntity<Map<String, Object>> getAllCircuitBreakerStates() {
         try {
-            Map<String, String> states = Map.of(
-                    "USER_SERVICE", circuitBreakerService.getCircuitBreakerState(ServiceType.USER_SERVICE),
-                    "PAYMENT_SERVICE", circuitBreakerService.getCircuitBreakerState(ServiceType.PAYMENT_SERVICE),
-                    "NOTIFICATION_SERVICE", circuitBreakerService.getCircuitBreakerState(ServiceType.NOTIFICATION_SERVICE)
-            );
+            Map<String, Object> states = new LinkedHashMap<>();
+            for (ServiceType type : ServiceType.values()) {
+                states.put(type.name(), circuitBreakerService.getCircuitBreakerState(type));
+            }
             return ResponseEntity.ok(states);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
@@ -87,7 +93,45 @@ public class CircuitBreakerController {
     }
 
     @GetMapping("/states")
-    public ResponseEntity<Map<String, String>> getAllCircuitBreakerStatesGet() {
-        return getAllCircuitBreakerStates();
+    public ResponseEntity<Map<String, Object>> getAllCircuitBreakerStatesGet(@RequestParam(defaultValue = "false") boolean details) {
+        if (!details) {
+            return getAllCircuitBreakerStates();
+        }
+        Map<String, Object> states = new LinkedHashMap<>();
+        for (ServiceType type : ServiceType.values()) {
+            states.put(type.name(), circuitBreakerService.getCircuitBreakerDetails(type));
+        }
+        return ResponseEntity.ok(states);
+    }
+
+    // Keyed by service name: the built-in services plus every breaker currently in the registry
+    @GetMapping("/v2/states")
+    public ResponseEntity<Map<String, Object>> getAllCircuitBreakerStatesByServiceName(@RequestParam(defaultValue = "false") boolean details) {
+        Map<String, Object> states = new TreeMap<>();
+        for (String serviceName : knownServiceNames()) {
+            states.put(serviceName, details
+                    ? circuitBreakerService.getCircuitBreakerDetails(serviceName)
+                    : circuitBreakerService.getCircuitBreakerState(serviceName));
+        }
+        return ResponseEntity.ok(states);
+    }
+
+    private Set<String> knownServiceNames() {
+        Set<String> serviceNames = new TreeSet<>(circuitBreakerService.getServiceNames());
+        for (ServiceType type : ServiceType.values()) {
+            serviceNames.add(type.getServiceName());
+        }
+        return serviceNames;
+    }
+
+    // Built-in services by enum name (USER_SERVICE) or service name; other names only once they have a breaker,
+    // so the admin API cannot be used to fill the registry
+    private String resolveServiceName(String serviceType) {
+        for (ServiceType type : ServiceType.values()) {
+            if (type.name().equalsIgnoreCase(serviceType) || type.getServiceName().equals(serviceType)) {
+                return type.getServiceName();
+            }
+        }
+        return circuitBreakerService.isRegistered(serviceType) ? serviceType : null;
     }
 }
@@ -6,8 +6,10 @@ import lombok.*;
 import org.apache.coyote.*;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.*;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 @RestController
 @RequestMapping("/api/notifications")
@@ -25,4 +27,26 @@ public class NotificationController {
     public ResponseEntity<Map<String, Object>> sendSMS(@RequestBody Map<String, Object> smsData) {
         return ResponseEntity.ok (notificationService.sendSms (smsData));
     }
+
+    @PostMapping("/email/batch")
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> sendEmailBatch(@RequestBody List<Map<String, Object>> emails) {
+        return notificationService.sendEmailBatch(emails).thenApply(ResponseEntity::ok);
+    }
+
+    @PostMapping("/sms/batch")
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> sendSmsBatch(@RequestBody List<Map<String, Object>> smsMessages) {
+        return notificationService.sendSmsBatch(smsMessages).thenApply(ResponseEntity::ok);
+    }
+
+    // Streaming variants, chosen by the Accept header: one result per line (NDJSON) or event (SSE) as each send
+    // completes, instead of one summary after the whole batch
+    @PostMapping(value = "/email/batch", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<Map<String, Object>> streamEmailBatch(@RequestBody List<Map<String, Object>> emails) {
+        return notificationService.streamEmailBatch(emails);
+    }
+
+    @PostMapping(value = "/sms/batch", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<Map<String, Object>> streamSmsBatch(@RequestBody List<Map<String, Object>> smsMessages) {
+        return notificationService.streamSmsBatch(smsMessages);
+    }
 }
@@ -6,7 +6,9 @@ import lombok.*;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
 import jakarta.validation.Valid;
-import com.circuitbreaker.circuit_breaker_patterns.dto.UserDto;
+import com.circuitbreaker.circuit_breaker_patterns.dto.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.*;
 
@@ -17,39 +19,70 @@ public class UserController {
 
     private final UserService userService;
 
-    // Public CRUD endpoints
+    // Public CRUD endpoints; unknown ids are answered with 404 by GlobalExceptionHandler
     @GetMapping("/{userId}")
-    public ResponseEntity<Map<String, Object>> getUser(@PathVariable String userId) {
-        Map<String, Object> user = userService.getUserById(userId);
-        if (user == null) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "User not found"));
-        }
-        return ResponseEntity.ok(user);
+    public ResponseEntity<UserResponse> getUser(@PathVariable String userId) {
+        return ResponseEntity.ok(userService.getUserById(userId));
     }
 
+    @GetMapping(value = "", params = "email")
+    public ResponseEntity<UserResponse> getUserByEmail(@RequestParam String email) {
+        return ResponseEntity.ok(userService.getUserByEmail(email));
+    }
+
+    // Emails are unique (case-insensitive): taking one that is in use is answered with 409
     @PostMapping("")
-    public ResponseEntity<Map<String, Object>> createUser(@Valid @RequestBody UserDto userDto) {
-        Map<String, Object> userData = Map.of(
-                "name", userDto.getName(),
-                "email", userDto.getEmail()
-        );
-        Map<String, Object> created = userService.createUser(userData);
-        return ResponseEntity.ok(created);
+    public ResponseEntity<UserResponse> createUser(@Valid @RequestBody UserDto userDto) {
+        return ResponseEntity.ok(userService.createUser(userDto));
+    }
+
+    @PutMapping("/{userId}")
+    public ResponseEntity<UserResponse> updateUser(@PathVariable String userId, @Valid @RequestBody UserDto userDto) {
+        return ResponseEntity.ok(userService.updateUser(userId, userDto));
+    }
+
+    @DeleteMapping("/{userId}")
+    public ResponseEntity<Void> deleteUser(@PathVariable String userId) {
+        userService.deleteUser(userId);
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/external/cache/stats")
+    public ResponseEntity<Map<String, Object>> getExternalUserCacheStats() {
+        return ResponseEntity.ok(userService.getExternalUserCacheStats());
     }
 
     // Keep external endpoints (call external API via RestTemplate)
     @GetMapping("/external/{userId}")
-    public ResponseEntity<Map<String, Object>> getUserExternal(@PathVariable String userId) {
+    public ResponseEntity<ExternalUserDto> getUserExternal(@PathVariable String userId) {
         return ResponseEntity.ok(userService.getUserByIdWithRestTemplate(userId));
     }
 
+    // Many ids in one request; ids that cannot be fetched come back as fallback entries instead of failing the batch
+    @PostMapping("/external/batch")
+    public Mono<ResponseEntity<ExternalUserBatchResponse>> getUsersExternalBatch(@RequestBody List<String> userIds) {
+        return userService.getUsersByIds(userIds).map(ResponseEntity::ok);
+    }
+
+    // Streaming variant, chosen by the Accept header: one user per line (NDJSON) or event (SSE) as each lookup completes
+    @PostMapping(value = "/external/batch", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<ExternalUserDto> streamUsersExternalBatch(@RequestBody List<String> userIds) {
+        return userService.streamUsersByIds(userIds);
+    }
+
+    // Non-blocking variant: the servlet thread is released while the external call is in flight
+    @GetMapping("/external/reactive/{userId}")
+    public Mono<ResponseEntity<ExternalUserDto>> getUserExternalReactive(@PathVariable String userId) {
+        return userService.getUserByIdReactive(userId).map(ResponseEntity::ok);
+    }
+
     @PutMapping("/external/{userId}")
-    public ResponseEntity<Map<String, Object>> updateUserExternal(@PathVariable String userId) {
+    public ResponseEntity<ExternalUserDto> updateUserExternal(@PathVariable String userId) {
         return ResponseEntity.ok(userService.getUserByIdWithRestTemplate(userId));
     }
 
     @DeleteMapping("/external/{userId}")
-    public ResponseEntity<Map<String, Object>> deleteUserExternal(@PathVariable String userId) {
+    public ResponseEntity<ExternalUserDto> deleteUserExternal(@PathVariable String userId) {
         return ResponseEntity.ok(userService.getUserByIdWithRestTemplate(userId));
     }
 }
@@ -0,0 +1,21 @@
+package com.circuitbreaker.circuit_breaker_patterns.dto;
+
+import java.util.*;
+
+// Response of POST /api/users/external/batch: one entry per distinct id, in request order. counts tells how many
+// came from the external API (or its fresh cache), from stale cache entries, or are fallback placeholders.
+public record ExternalUserBatchResponse(int total, Map<String, Long> counts, List<ExternalUserDto> users) {
+
+    public static ExternalUserBatchResponse of(List<ExternalUserDto> users) {
+        Map<String, Long> counts = new TreeMap<>();
+        users.forEach(user -> counts.merge(source(user), 1L, Long::sum));
+        return new ExternalUserBatchResponse(users.size(), counts, users);
+    }
+
+    private static String source(ExternalUserDto user) {
+        if (Boolean.TRUE.equals(user.stale())) {
+            return "stale";
+        }
+        return Boolean.TRUE.equals(user.fallback()) ? "fallback" : "fetched";
+    }
+}
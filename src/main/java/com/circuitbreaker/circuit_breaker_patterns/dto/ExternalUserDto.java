@@ -0,0 +1,35 @@
+package com.circuitbreaker.circuit_breaker_patterns.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// Response of the /api/users/external endpoints; absent flags are left out, so each variant keeps its own shape
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ExternalUserDto(String id,
+                              String name,
+                              String email,
+                              String service,
+                              Boolean success,
+                              Boolean stale,
+                              Boolean fallback,
+                              String error,
+                              Long timestamp,
+                              String status) {
+
+    public static ExternalUserDto fromUpstream(String userId, ExternalUserResponse response) {
+        return new ExternalUserDto(
+                response.id() != null ? response.id() : userId,
+                response.name() != null ? response.name() : "External User",
+                response.email() != null ? response.email() : "external@example.com",
+                "external-api", true, null, null, null, null, null);
+    }
+
+    public static ExternalUserDto fallback(String userId) {
+        return new ExternalUserDto(userId, "Fallback User", "default@example.com", "user-service-fallback",
+                null, null, true, "Service timeout or error occurred", System.currentTimeMillis(), "fallback");
+    }
+
+    // A previously fetched user served while the upstream is failing
+    public ExternalUserDto asStale() {
+        return new ExternalUserDto(id, name, email, "user-service-cache", success, true, fallback, error, timestamp, status);
+    }
+}
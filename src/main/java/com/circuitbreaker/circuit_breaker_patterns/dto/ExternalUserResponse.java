@@ -0,0 +1,9 @@
+package com.circuitbreaker.circuit_breaker_patterns.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+// The fields of the external /users/{id} payload we use. Jackson binds them straight from the token stream and skips
+// the rest (address, company...) without building maps for them. The upstream sends a numeric id, coerced to String.
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ExternalUserResponse(String id, String name, String email) {
+}
@@ -2,6 +2,7 @@ package com.circuitbreaker.circuit_breaker_patterns.dto;
 
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -12,10 +13,12 @@ import lombok.NoArgsConstructor;
 public class UserDto {
 
     @NotBlank(message = "name is required")
+    @Size(max = 200, message = "name must be at most 200 characters")
     private String name;
 
     @NotBlank(message = "email is required")
     @Email(message = "email must be valid")
+    @Size(max = 320, message = "email must be at most 320 characters")
     private String email;
 }
 
@@ -0,0 +1,5 @@
+package com.circuitbreaker.circuit_breaker_patterns.dto;
+
+// Immutable: an update stores a new record, readers of the old one are unaffected
+public record UserResponse(long id, String name, String email, long createdAt) {
+}
@@ -0,0 +1,8 @@
+package com.circuitbreaker.circuit_breaker_patterns.enums;
+
+public enum BulkheadType {
+
+    NONE,
+    SEMAPHORE,
+    THREADPOOL
+}
@@ -0,0 +1,31 @@
+package com.circuitbreaker.circuit_breaker_patterns.enums;
+
+import lombok.*;
+
+@Getter
+public enum CallOutcome {
+
+    SUCCESS("success"),
+    FAILURE("failure"),
+    TIMEOUT("timeout"),
+    NOT_PERMITTED("not_permitted"),
+    BULKHEAD_FULL("bulkhead_full"),
+    CONCURRENCY_LIMITED("concurrency_limited");
+
+    // Value of the "outcome" tag on guarded call metrics
+    private final String tag;
+
+    CallOutcome(String tag) {
+        this.tag = tag;
+    }
+
+    public static CallOutcome of(FallbackReason reason) {
+        return switch (reason) {
+            case NOT_PERMITTED -> NOT_PERMITTED;
+            case BULKHEAD_FULL -> BULKHEAD_FULL;
+            case CONCURRENCY_LIMITED -> CONCURRENCY_LIMITED;
+            case TIMEOUT -> TIMEOUT;
+            case FAILURE -> FAILURE;
+        };
+    }
+}
@@ -0,0 +1,9 @@
+package com.circuitbreaker.circuit_breaker_patterns.enums;
+
+public enum ClusterTransportType {
+
+    // Datagrams to the configured peers
+    UDP,
+    // Nodes of the same group inside one JVM, for tests
+    IN_PROCESS
+}
@@ -0,0 +1,7 @@
+package com.circuitbreaker.circuit_breaker_patterns.enums;
+
+public enum ExecutorMode {
+
+    PLATFORM,
+    VIRTUAL
+}
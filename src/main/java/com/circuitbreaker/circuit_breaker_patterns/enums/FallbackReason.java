@@ -0,0 +1,32 @@
+package com.circuitbreaker.circuit_breaker_patterns.enums;
+
+import com.circuitbreaker.circuit_breaker_patterns.exception.*;
+import io.github.resilience4j.bulkhead.*;
+import io.github.resilience4j.circuitbreaker.*;
+
+import java.util.concurrent.*;
+
+public enum FallbackReason {
+
+    NOT_PERMITTED,
+    BULKHEAD_FULL,
+    CONCURRENCY_LIMITED,
+    TIMEOUT,
+    FAILURE;
+
+    public static FallbackReason of(Throwable error) {
+        if (error instanceof CallNotPermittedException) {
+            return NOT_PERMITTED;
+        }
+        if (error instanceof BulkheadFullException) {
+            return BULKHEAD_FULL;
+        }
+        if (error instanceof ConcurrencyLimitExceededException) {
+            return CONCURRENCY_LIMITED;
+        }
+        if (error instanceof TimeoutException) {
+            return TIMEOUT;
+        }
+        return FAILURE;
+    }
+}
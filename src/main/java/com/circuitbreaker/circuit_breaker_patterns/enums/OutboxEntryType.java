@@ -0,0 +1,32 @@
+package com.circuitbreaker.circuit_breaker_patterns.enums;
+
+import lombok.*;
+
+import java.util.*;
+
+@Getter
+public enum OutboxEntryType {
+
+    EMAIL((byte) 1, ServiceType.NOTIFICATION_SERVICE),
+    SMS((byte) 2, ServiceType.NOTIFICATION_SERVICE),
+    PAYMENT((byte) 3, ServiceType.PAYMENT_SERVICE);
+
+    // Persisted in the outbox file, never reuse a code
+    private final byte code;
+    private final ServiceType serviceType;
+
+    OutboxEntryType(byte code, ServiceType serviceType) {
+        this.code = code;
+        this.serviceType = serviceType;
+    }
+
+    // Empty for a code no type has, e.g. a corrupt record
+    public static Optional<OutboxEntryType> fromCode(byte code) {
+        for (OutboxEntryType type : values()) {
+            if (type.code == code) {
+                return Optional.of(type);
+            }
+        }
+        return Optional.empty();
+    }
+}
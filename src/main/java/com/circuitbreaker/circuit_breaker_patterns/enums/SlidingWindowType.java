@@ -0,0 +1,9 @@
+package com.circuitbreaker.circuit_breaker_patterns.enums;
+
+public enum SlidingWindowType {
+
+    // sliding-window-size is a number of calls
+    COUNT_BASED,
+    // sliding-window-size is a number of seconds
+    TIME_BASED
+}
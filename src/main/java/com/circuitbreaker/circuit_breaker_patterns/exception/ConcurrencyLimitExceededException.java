@@ -0,0 +1,10 @@
+package com.circuitbreaker.circuit_breaker_patterns.exception;
+
+// Thrown instead of calling a service whose adaptive concurrency limit is reached. Like resilience4j's rejections it
+// carries no stack trace: it is expected under overload, and only thrown when the caller gave no fallback.
+public class ConcurrencyLimitExceededException extends RuntimeException {
+
+    public ConcurrencyLimitExceededException(String serviceName, int limit) {
+        super("Concurrency limit of " + limit + " reached for service " + serviceName, null, false, false);
+    }
+}
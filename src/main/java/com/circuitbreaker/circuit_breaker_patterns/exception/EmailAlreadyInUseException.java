@@ -0,0 +1,9 @@
+package com.circuitbreaker.circuit_breaker_patterns.exception;
+
+// Answered with 409 by GlobalExceptionHandler
+public class EmailAlreadyInUseException extends RuntimeException {
+
+    public EmailAlreadyInUseException(String email) {
+        super("Email already in use: " + email);
+    }
+}
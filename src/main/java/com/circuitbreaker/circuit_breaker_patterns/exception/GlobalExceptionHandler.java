@@ -7,6 +7,7 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.context.request.WebRequest;
 
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 @ControllerAdvice
 public class GlobalExceptionHandler {
@@ -32,4 +33,37 @@ public class GlobalExceptionHandler {
                         "path", request.getDescription(false).replace("uri=", "")
                 ));
     }
-}
\ No newline at end of file
+
+    @ExceptionHandler(EmailAlreadyInUseException.class)
+    public ResponseEntity<Map<String, Object>> handleEmailAlreadyInUseException(EmailAlreadyInUseException ex, WebRequest request) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of(
+                        "error", "Conflict",
+                        "message", ex.getMessage(),
+                        "status", 409,
+                        "path", request.getDescription(false).replace("uri=", "")
+                ));
+    }
+
+    @ExceptionHandler(UserStorePersistenceException.class)
+    public ResponseEntity<Map<String, Object>> handleUserStorePersistenceException(UserStorePersistenceException ex, WebRequest request) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(Map.of(
+                        "error", "Service Unavailable",
+                        "message", ex.getMessage(),
+                        "status", 503,
+                        "path", request.getDescription(false).replace("uri=", "")
+                ));
+    }
+
+    @ExceptionHandler(NoSuchElementException.class)
+    public ResponseEntity<Map<String, Object>> handleNoSuchElementException(NoSuchElementException ex, WebRequest request) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(Map.of(
+                        "error", "Not Found",
+                        "message", ex.getMessage(),
+                        "status", 404,
+                        "path", request.getDescription(false).replace("uri=", "")
+                ));
+    }
+}
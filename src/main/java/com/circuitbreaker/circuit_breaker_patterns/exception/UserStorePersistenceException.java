@@ -0,0 +1,10 @@
+package com.circuitbreaker.circuit_breaker_patterns.exception;
+
+// A user change that could not be written to the journal and was therefore not made. Answered with 503 by
+// GlobalExceptionHandler.
+public class UserStorePersistenceException extends RuntimeException {
+
+    public UserStorePersistenceException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
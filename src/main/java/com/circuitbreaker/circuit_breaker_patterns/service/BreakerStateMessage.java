@@ -0,0 +1,15 @@
+package com.circuitbreaker.circuit_breaker_patterns.service;
+
+import io.github.resilience4j.circuitbreaker.*;
+
+// State and sliding-window counts of one breaker on one node. The sequence grows per node, so reordered or
+// duplicated datagrams are recognized and dropped. stateSince is the sender's wall-clock time (epoch millis) at which
+// its breaker entered the state, 0 when it never changed.
+public record BreakerStateMessage(String nodeId,
+                                  long sequence,
+                                  String serviceName,
+                                  CircuitBreaker.State state,
+                                  long stateSince,
+                                  int failedCalls,
+                                  int bufferedCalls) {
+}
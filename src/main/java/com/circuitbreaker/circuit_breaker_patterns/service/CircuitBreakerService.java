@@ -1,18 +1,91 @@
 package com.circuitbreaker.circuit_breaker_patterns.service;
 
+import com.circuitbreaker.circuit_breaker_patterns.config.CircuitBrakerProperties;
 import com.circuitbreaker.circuit_breaker_patterns.enums.*;
+import io.github.resilience4j.circuitbreaker.*;
+import reactor.core.publisher.*;
 
+import java.util.*;
 import java.util.function.*;
 
+// Breakers are keyed by service name and created on first use; ServiceType is a shorthand for the built-in services
 public interface CircuitBreakerService {
 
-    <T> T executeWithCircuitBreaker(ServiceType serviceType, Supplier<T> operation);
+    // Caller tag for call sites that do not name themselves
+    String UNNAMED_CALLER = "unnamed";
 
-    <T> T executeWithCircuitBreaker(ServiceType serviceType, Supplier<T> operation, Supplier<T> fallback);
+    <T> T executeWithCircuitBreaker(String serviceName, String caller, Supplier<T> operation);
 
-    void resetCircuitBreaker(ServiceType serviceType);
+    <T> T executeWithCircuitBreaker(String serviceName, String caller, Supplier<T> operation, Supplier<T> fallback);
 
-    String getCircuitBreakerState(ServiceType serviceType);
+    <T> Mono<T> executeReactive(String serviceName, String caller, Mono<T> operation);
 
-    void forceCircuitBreakerState(ServiceType serviceType, String state);
+    <T> Mono<T> executeReactive(String serviceName, String caller, Mono<T> operation, Function<Throwable, Mono<T>> fallback);
+
+    void resetCircuitBreaker(String serviceName);
+
+    String getCircuitBreakerState(String serviceName);
+
+    void forceCircuitBreakerState(String serviceName, String state);
+
+    Map<String, Object> getCircuitBreakerDetails(String serviceName);
+
+    CircuitBreakerConfig getCircuitBreakerConfig(String serviceName);
+
+    void reconfigureCircuitBreaker(String serviceName, CircuitBreakerConfig config);
+
+    List<String> applyServiceConfig(String serviceName, CircuitBrakerProperties.ServiceConfig config);
+
+    // Services that currently hold a breaker; idle ones drop out when they are evicted
+    Set<String> getServiceNames();
+
+    boolean isRegistered(String serviceName);
+
+    default <T> T executeWithCircuitBreaker(ServiceType serviceType, Supplier<T> operation) {
+        return executeWithCircuitBreaker(serviceType.getServiceName(), UNNAMED_CALLER, operation);
+    }
+
+    default <T> T executeWithCircuitBreaker(ServiceType serviceType, Supplier<T> operation, Supplier<T> fallback) {
+        return executeWithCircuitBreaker(serviceType.getServiceName(), UNNAMED_CALLER, operation, fallback);
+    }
+
+    default <T> Mono<T> executeReactive(ServiceType serviceType, Mono<T> operation) {
+        return executeReactive(serviceType.getServiceName(), UNNAMED_CALLER, operation);
+    }
+
+    default <T> Mono<T> executeReactive(ServiceType serviceType, Mono<T> operation, Function<Throwable, Mono<T>> fallback) {
+        return executeReactive(serviceType.getServiceName(), UNNAMED_CALLER, operation, fallback);
+    }
+
+    default <T> T executeWithCircuitBreaker(ServiceType serviceType, String caller, Supplier<T> operation) {
+        return executeWithCircuitBreaker(serviceType.getServiceName(), caller, operation);
+    }
+
+    default <T> T executeWithCircuitBreaker(ServiceType serviceType, String caller, Supplier<T> operation, Supplier<T> fallback) {
+        return executeWithCircuitBreaker(serviceType.getServiceName(), caller, operation, fallback);
+    }
+
+    default <T> Mono<T> executeReactive(ServiceType serviceType, String caller, Mono<T> operation) {
+        return executeReactive(serviceType.getServiceName(), caller, operation);
+    }
+
+    default <T> Mono<T> executeReactive(ServiceType serviceType, String caller, Mono<T> operation, Function<Throwable, Mono<T>> fallback) {
+        return executeReactive(serviceType.getServiceName(), caller, operation, fallback);
+    }
+
+    default void resetCircuitBreaker(ServiceType serviceType) {
+        resetCircuitBreaker(serviceType.getServiceName());
+    }
+
+    default String getCircuitBreakerState(ServiceType serviceType) {
+        return getCircuitBreakerState(serviceType.getServiceName());
+    }
+
+    default void forceCircuitBreakerState(ServiceType serviceType, String state) {
+        forceCircuitBreakerState(serviceType.getServiceName(), state);
+    }
+
+    default Map<String, Object> getCircuitBreakerDetails(ServiceType serviceType) {
+        return getCircuitBreakerDetails(serviceType.getServiceName());
+    }
 }
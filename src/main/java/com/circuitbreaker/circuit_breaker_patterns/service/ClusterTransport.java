@@ -0,0 +1,15 @@
+package com.circuitbreaker.circuit_breaker_patterns.service;
+
+import java.util.function.*;
+
+// Carries breaker state between application instances. Delivery is best effort: a lost message is made up for by
+// the next heartbeat.
+public interface ClusterTransport extends AutoCloseable {
+
+    void start(Consumer<BreakerStateMessage> listener);
+
+    void publish(BreakerStateMessage message);
+
+    @Override
+    void close();
+}
@@ -1,90 +1,186 @@
 package com.circuitbreaker.circuit_breaker_patterns.service;
 
 
+import com.circuitbreaker.circuit_breaker_patterns.dto.*;
 import com.circuitbreaker.circuit_breaker_patterns.enums.*;
-import lombok.*;
+import com.circuitbreaker.circuit_breaker_patterns.service.impl.*;
 import lombok.extern.slf4j.*;
+import org.springframework.beans.factory.annotation.*;
 import org.springframework.stereotype.*;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class UserService {
 
     private final CircuitBreakerService circuitBreakerService;
     private final WebClient webClient;
+    private final ExternalUserCache externalUserCache;
+    private final RequestHedger requestHedger;
+    private final UserStore userStore;
+    private final int batchMaxIds;
+    private final int batchParallelism;
+    // Concurrent lookups of the same userId share one upstream call and one breaker permit
+    private final SingleFlight<ExternalUserDto> externalLookups = new SingleFlight<>();
 
-    // In-memory user store for demo purposes
-    private final ConcurrentHashMap<String, Map<String, Object>> userStore = new ConcurrentHashMap<>();
-    private final AtomicLong idCounter = new AtomicLong(System.currentTimeMillis());
+    public UserService(CircuitBreakerService circuitBreakerService,
+                       WebClient webClient,
+                       ExternalUserCache externalUserCache,
+                       RequestHedger requestHedger,
+                       UserStore userStore,
+                       @Value("${user-batch.max-ids:500}") int batchMaxIds,
+                       @Value("${user-batch.parallelism:16}") int batchParallelism) {
+        this.circuitBreakerService = circuitBreakerService;
+        this.webClient = webClient;
+        this.externalUserCache = externalUserCache;
+        this.requestHedger = requestHedger;
+        this.userStore = userStore;
+        this.batchMaxIds = batchMaxIds;
+        this.batchParallelism = batchParallelism;
+    }
 
-    // Public CRUD methods
-    public Map<String, Object> getUserById(String userId) {
-        return userStore.get(userId);
+    // Public CRUD methods; ids arrive as path segments, one that is not a number cannot exist
+    public UserResponse getUserById(String userId) {
+        UserResponse user = userStore.get(parseUserId(userId));
+        if (user == null) {
+            throw new NoSuchElementException("User not found: " + userId);
+        }
+        return user;
     }
 
-    public Map<String, Object> createUser(Map<String, Object> userData) {
-        String id = String.valueOf(idCounter.incrementAndGet());
-        Map<String, Object> user = new HashMap<>();
-        user.put("id", id);
-        user.put("name", userData.getOrDefault("name", "Unknown"));
-        user.put("email", userData.getOrDefault("email", "unknown@example.com"));
-        user.put("createdAt", System.currentTimeMillis());
-        userStore.put(id, user);
+    public UserResponse getUserByEmail(String email) {
+        UserResponse user = userStore.findByEmail(email);
+        if (user == null) {
+            throw new NoSuchElementException("User not found: " + email);
+        }
         return user;
     }
 
-    public Map<String, Object> getUserByIdWithRestTemplate(String userId) {
-        return circuitBreakerService.executeWithCircuitBreaker (
+    public UserResponse createUser(UserDto userDto) {
+        return userStore.create(userDto.getName(), userDto.getEmail());
+    }
+
+    public UserResponse updateUser(String userId, UserDto userDto) {
+        UserResponse user = userStore.update(parseUserId(userId), userDto.getName(), userDto.getEmail());
+        if (user == null) {
+            throw new NoSuchElementException("User not found: " + userId);
+        }
+        return user;
+    }
+
+    public void deleteUser(String userId) {
+        if (userStore.delete(parseUserId(userId)) == null) {
+            throw new NoSuchElementException("User not found: " + userId);
+        }
+    }
+
+    public ExternalUserDto getUserByIdWithRestTemplate(String userId) {
+        // Fresh cache hits never touch the breaker
+        ExternalUserDto cached = externalUserCache.getFresh(userId);
+        if (cached != null) {
+            return cached;
+        }
+        return externalLookups.execute(userId, () -> circuitBreakerService.executeWithCircuitBreaker (
                 ServiceType.USER_SERVICE,
+                "getUserByIdWithRestTemplate",
                 () -> getUserByIdWithRestTemplateOperation(userId),
                 () -> getUserByIdCallback(userId)
-        );
+        ));
+    }
+
+    public Mono<ExternalUserDto> getUserByIdReactive(String userId) {
+        return Mono.defer(() -> Mono.justOrEmpty(externalUserCache.getFresh(userId)))
+                .switchIfEmpty(externalLookups.executeReactive(userId, () -> circuitBreakerService.executeReactive(
+                        ServiceType.USER_SERVICE,
+                        "getUserByIdReactive",
+                        requestHedger.hedge(ServiceType.USER_SERVICE.getServiceName(), fetchExternalUser(userId)),
+                        e -> Mono.fromSupplier(() -> getUserByIdCallback(userId))
+                )));
+    }
+
+    // Every id is a lookup of its own (cache, single flight, breaker, fallback), so a failing one only marks its own
+    // entry. At most batch-parallelism of them are in flight, below the USER_SERVICE bulkhead, so a large batch is
+    // not rejected wholesale.
+    public Mono<ExternalUserBatchResponse> getUsersByIds(List<String> userIds) {
+        return Flux.fromIterable(distinctBatchIds(userIds))
+                .flatMapSequential(this::getUserInBatch, batchParallelism)
+                .collectList()
+                .map(ExternalUserBatchResponse::of);
+    }
+
+    // Same lookups, each user emitted as soon as it is resolved: completion order, nothing collected
+    public Flux<ExternalUserDto> streamUsersByIds(List<String> userIds) {
+        return Flux.fromIterable(distinctBatchIds(userIds))
+                .flatMap(this::getUserInBatch, batchParallelism);
+    }
+
+    // An error raised outside the breaker's fallback (cache, single flight, building the request) degrades only
+    // this id to its fallback entry instead of failing the whole batch
+    private Mono<ExternalUserDto> getUserInBatch(String userId) {
+        return Mono.defer(() -> getUserByIdReactive(userId))
+                .onErrorResume(e -> {
+                    log.warn("Lookup of user {} in batch failed, using fallback: {}", userId, e.toString());
+                    return Mono.fromSupplier(() -> getUserByIdCallback(userId));
+                });
     }
 
-    private Map<String, Object> getUserByIdWithRestTemplateOperation(String userId) {
+    private Set<String> distinctBatchIds(List<String> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            throw new IllegalArgumentException("At least one user id is required");
+        }
+        if (userIds.size() > batchMaxIds) {
+            throw new IllegalArgumentException("Batch exceeds the maximum of " + batchMaxIds + " user ids");
+        }
+        if (userIds.stream().anyMatch(userId -> userId == null || userId.isBlank())) {
+            throw new IllegalArgumentException("User ids must not be blank");
+        }
+        return new LinkedHashSet<>(userIds);
+    }
+
+    public Map<String, Object> getExternalUserCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(externalUserCache.getStats());
+        stats.put("coalesced", externalLookups.getCoalescedCount());
+        stats.put("inFlight", externalLookups.getInFlightCount());
+        return stats;
+    }
+
+    private ExternalUserDto getUserByIdWithRestTemplateOperation(String userId) {
         try {
-            // Call external API with configured base-url using WebClient
-            String urlPath = "/users/" + userId;
-            Mono<Map> mono = webClient.get().uri(urlPath).retrieve().bodyToMono(Map.class);
-            Map response = mono.block(Duration.ofSeconds(5));
-
-            if (response != null) {
-                return Map.of(
-                        "id", response.getOrDefault("id", userId),
-                        "name", response.getOrDefault("name", "External User"),
-                        "email", response.getOrDefault("email", "external@example.com"),
-                        "service", "external-api",
-                        "success", true
-                );
-            } else {
+            // No local deadline: the USER_SERVICE time limiter interrupts this call (and both hedged attempts) at the configured timeout
+            ExternalUserDto response = requestHedger.hedge(ServiceType.USER_SERVICE.getServiceName(), fetchExternalUser(userId)).block();
+            if (response == null) {
                 throw new RuntimeException("External API returned null response");
             }
+            return response;
         } catch (Exception e) {
             log.error("WebClient call failed for user: {}", userId, e);
             throw new RuntimeException("External service call failed: " + e.getMessage(), e);
         }
     }
 
+    private Mono<ExternalUserDto> fetchExternalUser(String userId) {
+        // Call external API with configured base-url using WebClient; the id is encoded, never expanded as a template
+        return webClient.get().uri("/users/{id}", userId).retrieve().bodyToMono(ExternalUserResponse.class)
+                .map(response -> ExternalUserDto.fromUpstream(userId, response))
+                .doOnNext(user -> externalUserCache.put(userId, user));
+    }
 
-    private Map<String, Object> getUserByIdCallback(String userId) {
+    private ExternalUserDto getUserByIdCallback(String userId) {
         log.info("Fallback executed for user service - userId: {}", userId);
-        return Map.of(
-                "id", userId,
-                "name", "Fallback User",
-                "email", "default@example.com",
-                "service", "user-service-fallback",
-                "fallback", true,
-                "error", "Service timeout or error occurred",
-                "timestamp", System.currentTimeMillis(),
-                "status", "fallback"
-        );
+        // Stale-on-error: a previously fetched user beats a synthetic one
+        ExternalUserDto stale = externalUserCache.getStale(userId);
+        return stale != null ? stale.asStale() : ExternalUserDto.fallback(userId);
+    }
+
+    private static long parseUserId(String userId) {
+        try {
+            return Long.parseLong(userId);
+        } catch (NumberFormatException e) {
+            throw new NoSuchElementException("User not found: " + userId);
+        }
     }
 }
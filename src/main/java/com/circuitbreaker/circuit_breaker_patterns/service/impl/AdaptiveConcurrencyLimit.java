@@ -0,0 +1,91 @@
+package com.circuitbreaker.circuit_breaker_patterns.service.impl;
+
+import com.circuitbreaker.circuit_breaker_patterns.config.CircuitBrakerProperties;
+
+import java.util.concurrent.atomic.*;
+
+// Limit on calls in flight to one service, adjusted from the round trip time of completed calls (gradient
+// algorithm). A short-term average RTT is compared with a long-term one: while the service answers as fast as usual
+// the limit grows by about sqrt(limit) per call, as queueing makes it slower the limit shrinks in proportion, and a
+// timeout cuts it by 10%. Latency of admitted calls thereby stays near what the service does without load, and
+// excess calls are rejected instead of queueing up in front of it.
+public class AdaptiveConcurrencyLimit {
+
+    // Samples the long-term average spans; far longer than a load spike, so it keeps the pre-spike latency
+    private static final double LONG_RTT_SAMPLES = 600;
+    private static final double SHORT_RTT_SAMPLES = 10;
+    private static final double TIMEOUT_BACKOFF_RATIO = 0.9;
+    // The gradient alone may at most halve the limit per sample
+    private static final double MIN_GRADIENT = 0.5;
+
+    private final CircuitBrakerProperties.ConcurrencyLimitConfig config;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+    // Guarded by this
+    private double estimatedLimit;
+    private double shortRttNanos;
+    private double longRttNanos;
+
+    public AdaptiveConcurrencyLimit(CircuitBrakerProperties.ConcurrencyLimitConfig config) {
+        this.config = config;
+        this.estimatedLimit = clamp(config.getInitialLimit());
+        this.limit = (int) estimatedLimit;
+    }
+
+    public boolean tryAcquire() {
+        for (int current = inFlight.get(); current < limit; current = inFlight.get()) {
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void onSuccess(long rttNanos) {
+        int inFlightBefore = inFlight.getAndDecrement();
+        synchronized (this) {
+            shortRttNanos = shortRttNanos == 0 ? rttNanos : shortRttNanos + (rttNanos - shortRttNanos) / SHORT_RTT_SAMPLES;
+            longRttNanos = longRttNanos == 0 ? rttNanos : longRttNanos + (rttNanos - longRttNanos) / LONG_RTT_SAMPLES;
+            // After a sustained slowdown ends, the long-term average catches up with the faster service quickly
+            if (longRttNanos > 2 * shortRttNanos) {
+                longRttNanos *= 0.95;
+            }
+            // Only adjusted while the limit is actually used, an idle service would otherwise creep up to max-limit
+            if (inFlightBefore * 2 < estimatedLimit) {
+                return;
+            }
+            double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, config.getRttTolerance() * longRttNanos / shortRttNanos));
+            double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+            update(estimatedLimit * (1 - config.getSmoothing()) + newLimit * config.getSmoothing());
+        }
+    }
+
+    public void onTimeout() {
+        inFlight.decrementAndGet();
+        synchronized (this) {
+            update(estimatedLimit * TIMEOUT_BACKOFF_RATIO);
+        }
+    }
+
+    // Calls that ended without telling anything about the service's load: rejected by the breaker, failed, cancelled
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private void update(double newLimit) {
+        estimatedLimit = clamp(newLimit);
+        limit = (int) estimatedLimit;
+    }
+
+    private double clamp(double value) {
+        return Math.max(config.getMinLimit(), Math.min(config.getMaxLimit(), value));
+    }
+}
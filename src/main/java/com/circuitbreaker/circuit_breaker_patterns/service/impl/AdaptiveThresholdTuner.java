@@ -0,0 +1,163 @@
+package com.circuitbreaker.circuit_breaker_patterns.service.impl;
+
+import com.circuitbreaker.circuit_breaker_patterns.config.CircuitBrakerProperties;
+import com.circuitbreaker.circuit_breaker_patterns.enums.*;
+import com.circuitbreaker.circuit_breaker_patterns.service.*;
+import io.github.resilience4j.circuitbreaker.*;
+import io.micrometer.core.instrument.*;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.*;
+import lombok.*;
+import lombok.extern.slf4j.*;
+import org.springframework.scheduling.annotation.*;
+import org.springframework.stereotype.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Resizes the sliding window and adjusts failure / slow-call thresholds of services with adaptive.enabled, using
+// the request rate and p99 latency recorded by GuardedCallMetrics. Only CLOSED breakers are tuned, and only when
+// the target moved enough to be worth the reset of the sliding window that comes with a reconfiguration.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AdaptiveThresholdTuner {
+
+    private static final Set<String> UPSTREAM_OUTCOMES = Set.of(
+            CallOutcome.SUCCESS.getTag(), CallOutcome.FAILURE.getTag(), CallOutcome.TIMEOUT.getTag());
+    // Baseline latency follows improvements quickly and degradations slowly, so a degrading
+    // upstream is caught by the slow-call threshold before the baseline catches up with it
+    private static final double BASELINE_DECREASE_WEIGHT = 0.3;
+    private static final double BASELINE_INCREASE_WEIGHT = 0.05;
+    private static final double SIGNIFICANT_CHANGE = 0.2;
+    private static final float SIGNIFICANT_THRESHOLD_CHANGE = 5f;
+
+    private final CircuitBrakerProperties circuitBrakerProperties;
+    private final CircuitBreakerService circuitBreakerService;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Observation> observations = new HashMap<>();
+
+    private static final class Observation {
+        private long callCount;
+        private long observedAt;
+        private double baselineP99Nanos;
+    }
+
+    private record Tuning(int slidingWindowSize, int minimumNumberOfCalls, float failureRateThreshold,
+                          Duration slowCallDurationThreshold) {}
+
+    @Scheduled(fixedDelayString = "${circuit-breaker.adaptive.interval:15s}")
+    public synchronized void tune() {
+        Set<String> serviceNames = circuitBreakerService.getServiceNames();
+        // Evicted services start over if they come back
+        observations.keySet().retainAll(serviceNames);
+        for (String serviceName : serviceNames) {
+            CircuitBrakerProperties.ServiceConfig config = circuitBrakerProperties.resolve(serviceName);
+            if (config.getAdaptive().isEnabled()) {
+                tune(serviceName, config);
+            }
+        }
+    }
+
+    private void tune(String serviceName, CircuitBrakerProperties.ServiceConfig config) {
+        Collection<Timer> timers = meterRegistry.find(GuardedCallMetrics.CALLS_METRIC).tag("service", serviceName).timers();
+        long callCount = 0;
+        double p99Nanos = 0;
+        for (Timer timer : timers) {
+            String outcome = timer.getId().getTag("outcome");
+            if (UPSTREAM_OUTCOMES.contains(outcome)) {
+                callCount += timer.count();
+            }
+            if (CallOutcome.SUCCESS.getTag().equals(outcome)) {
+                p99Nanos = Math.max(p99Nanos, percentile(timer, 0.99));
+            }
+        }
+
+        long now = System.nanoTime();
+        Observation observation = observations.get(serviceName);
+        if (observation == null) {
+            observation = new Observation();
+            observation.callCount = callCount;
+            observation.observedAt = now;
+            observations.put(serviceName, observation);
+            return;
+        }
+        double elapsedSeconds = (now - observation.observedAt) / 1e9;
+        double requestRate = elapsedSeconds > 0 ? (callCount - observation.callCount) / elapsedSeconds : 0;
+        observation.callCount = callCount;
+        observation.observedAt = now;
+
+        if (!CircuitBreaker.State.CLOSED.name().equals(circuitBreakerService.getCircuitBreakerState(serviceName))) {
+            return;
+        }
+        if (p99Nanos > 0) {
+            double weight = observation.baselineP99Nanos == 0 ? 1
+                    : p99Nanos < observation.baselineP99Nanos ? BASELINE_DECREASE_WEIGHT : BASELINE_INCREASE_WEIGHT;
+            observation.baselineP99Nanos += (p99Nanos - observation.baselineP99Nanos) * weight;
+        }
+
+        Tuning target = computeTuning(config, requestRate, observation.baselineP99Nanos);
+        CircuitBreakerConfig current = circuitBreakerService.getCircuitBreakerConfig(serviceName);
+        if (!isSignificant(current, target)) {
+            return;
+        }
+        CircuitBreakerConfig.Builder builder = CircuitBreakerConfig.from(current)
+                .slidingWindowSize(target.slidingWindowSize())
+                .minimumNumberOfCalls(target.minimumNumberOfCalls())
+                .failureRateThreshold(target.failureRateThreshold());
+        if (target.slowCallDurationThreshold() != null) {
+            builder.slowCallDurationThreshold(target.slowCallDurationThreshold());
+        }
+        circuitBreakerService.reconfigureCircuitBreaker(serviceName, builder.build());
+        log.info("Adaptive thresholds for {} at {} req/s: {}", serviceName, String.format("%.1f", requestRate), target);
+    }
+
+    private Tuning computeTuning(CircuitBrakerProperties.ServiceConfig config, double requestRate, double baselineP99Nanos) {
+        CircuitBrakerProperties.AdaptiveConfig adaptive = config.getAdaptive();
+        boolean timeBased = config.getSlidingWindowType() == SlidingWindowType.TIME_BASED;
+        int minWindow = adaptive.getMinSlidingWindowSize();
+        int maxWindow = Math.max(minWindow, adaptive.getMaxSlidingWindowSize());
+        // Calls a window holds at the current rate; a time-based window keeps its configured length in seconds
+        double spanSeconds = timeBased ? config.getSlidingWindowSize() : adaptive.getWindowSpan().toMillis() / 1000.0;
+        int callsInWindow = (int) Math.max(minWindow, Math.min(maxWindow, Math.round(requestRate * spanSeconds)));
+        int window = timeBased ? config.getSlidingWindowSize() : callsInWindow;
+
+        // A small window is a noisy sample: tolerate more failures there, down to the configured threshold at the largest window
+        double position = maxWindow == minWindow ? 1 : (callsInWindow - minWindow) / (double) (maxWindow - minWindow);
+        float failureRateThreshold = (float) (adaptive.getMaxFailureRateThreshold()
+                - (adaptive.getMaxFailureRateThreshold() - config.getFailureRateThreshold()) * position);
+
+        Duration slowCallDuration = null;
+        if (baselineP99Nanos > 0) {
+            long nanos = (long) (baselineP99Nanos * adaptive.getSlowCallLatencyMultiplier());
+            nanos = Math.max(adaptive.getMinSlowCallDuration().toNanos(), Math.min(config.getTimeoutDuration().toNanos(), nanos));
+            slowCallDuration = Duration.ofMillis(TimeUnit.NANOSECONDS.toMillis(nanos));
+        }
+        int minimumNumberOfCalls = timeBased ? config.getMinimumNumberOfCalls() : Math.min(config.getMinimumNumberOfCalls(), window);
+        return new Tuning(window, minimumNumberOfCalls, failureRateThreshold, slowCallDuration);
+    }
+
+    private boolean isSignificant(CircuitBreakerConfig current, Tuning target) {
+        if (Math.abs(target.slidingWindowSize() - current.getSlidingWindowSize()) >= current.getSlidingWindowSize() * SIGNIFICANT_CHANGE) {
+            return true;
+        }
+        if (Math.abs(target.failureRateThreshold() - current.getFailureRateThreshold()) >= SIGNIFICANT_THRESHOLD_CHANGE) {
+            return true;
+        }
+        if (target.slowCallDurationThreshold() == null) {
+            return false;
+        }
+        long currentSlowMillis = current.getSlowCallDurationThreshold().toMillis();
+        return Math.abs(target.slowCallDurationThreshold().toMillis() - currentSlowMillis) >= currentSlowMillis * SIGNIFICANT_CHANGE;
+    }
+
+    private double percentile(Timer timer, double percentile) {
+        for (ValueAtPercentile value : timer.takeSnapshot().percentileValues()) {
+            if (value.percentile() == percentile) {
+                return value.value(TimeUnit.NANOSECONDS);
+            }
+        }
+        return 0;
+    }
+}
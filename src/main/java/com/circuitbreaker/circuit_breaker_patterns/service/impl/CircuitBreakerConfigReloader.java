@@ -0,0 +1,104 @@
+package com.circuitbreaker.circuit_breaker_patterns.service.impl;
+
+import com.circuitbreaker.circuit_breaker_patterns.config.CircuitBrakerProperties;
+import com.circuitbreaker.circuit_breaker_patterns.service.*;
+import lombok.extern.slf4j.*;
+import org.springframework.beans.factory.annotation.*;
+import org.springframework.boot.context.properties.bind.*;
+import org.springframework.boot.context.properties.source.*;
+import org.springframework.boot.env.*;
+import org.springframework.core.env.*;
+import org.springframework.core.io.*;
+import org.springframework.scheduling.annotation.*;
+import org.springframework.stereotype.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+// Re-binds circuit-breaker.* and applies what changed to the live breakers. The optional override file
+// (circuit-breaker.reload.file) is laid over the application config and polled for changes; a reload can
+// also be requested through POST /api/circuit-breaker/config/reload.
+@Slf4j
+@Component
+public class CircuitBreakerConfigReloader {
+
+    private final ConfigurableEnvironment environment;
+    private final CircuitBrakerProperties circuitBrakerProperties;
+    private final CircuitBreakerService circuitBreakerService;
+    private final Path overrideFile;
+    private long overrideFileModifiedAt;
+
+    public CircuitBreakerConfigReloader(ConfigurableEnvironment environment,
+                                        CircuitBrakerProperties circuitBrakerProperties,
+                                        CircuitBreakerService circuitBreakerService,
+                                        @Value("${circuit-breaker.reload.file:}") String overrideFile) {
+        this.environment = environment;
+        this.circuitBrakerProperties = circuitBrakerProperties;
+        this.circuitBreakerService = circuitBreakerService;
+        this.overrideFile = overrideFile.isBlank() ? null : Path.of(overrideFile);
+    }
+
+    @Scheduled(fixedDelayString = "${circuit-breaker.reload.poll-interval:5s}")
+    public void pollOverrideFile() {
+        if (overrideFile == null) {
+            return;
+        }
+        long modifiedAt = 0;
+        try {
+            if (Files.exists(overrideFile)) {
+                modifiedAt = Files.getLastModifiedTime(overrideFile).toMillis();
+            }
+        } catch (IOException e) {
+            log.warn("Cannot read circuit breaker override file {}: {}", overrideFile, e.getMessage());
+            return;
+        }
+        // Also fires once at startup when the file exists, and when it is deleted (settings fall back to application.yml)
+        if (modifiedAt != overrideFileModifiedAt) {
+            overrideFileModifiedAt = modifiedAt;
+            try {
+                reload();
+            } catch (IllegalArgumentException e) {
+                // Already logged, the next edit of the file is picked up again
+            }
+        }
+    }
+
+    public synchronized Map<String, List<String>> reload() {
+        CircuitBrakerProperties loaded;
+        try {
+            loaded = load();
+        } catch (IOException | BindException e) {
+            // A broken file must not take the running breakers down with it
+            log.error("Circuit breaker config reload failed, keeping current settings: {}", e.getMessage());
+            throw new IllegalArgumentException("Invalid circuit breaker configuration: " + e.getMessage(), e);
+        }
+        // Breakers created from now on resolve their settings against the reloaded properties
+        Map<String, CircuitBrakerProperties.ServiceConfig> services = circuitBrakerProperties.getServices();
+        services.putAll(loaded.getServices());
+        services.keySet().retainAll(loaded.getServices().keySet());
+        circuitBrakerProperties.setDefaults(loaded.getDefaults());
+        circuitBrakerProperties.setRegistry(loaded.getRegistry());
+        circuitBrakerProperties.setRetryBudget(loaded.getRetryBudget());
+
+        Map<String, List<String>> changes = new TreeMap<>();
+        for (String serviceName : circuitBreakerService.getServiceNames()) {
+            List<String> changed = circuitBreakerService.applyServiceConfig(serviceName, circuitBrakerProperties.resolve(serviceName));
+            if (!changed.isEmpty()) {
+                changes.put(serviceName, changed);
+            }
+        }
+        log.info("Circuit breaker config reloaded{}: {}", overrideFile != null ? " with " + overrideFile : "", changes);
+        return changes;
+    }
+
+    private CircuitBrakerProperties load() throws IOException {
+        List<PropertySource<?>> sources = new ArrayList<>();
+        if (overrideFile != null && Files.exists(overrideFile)) {
+            sources.addAll(new YamlPropertySourceLoader().load("circuit-breaker-override", new FileSystemResource(overrideFile)));
+        }
+        environment.getPropertySources().forEach(sources::add);
+        return new Binder(ConfigurationPropertySources.from(sources))
+                .bindOrCreate("circuit-breaker", CircuitBrakerProperties.class);
+    }
+}
@@ -3,16 +3,29 @@ package com.circuitbreaker.circuit_breaker_patterns.service.impl;
 
 import com.circuitbreaker.circuit_breaker_patterns.config.CircuitBrakerProperties;
 import com.circuitbreaker.circuit_breaker_patterns.enums.*;
+import com.circuitbreaker.circuit_breaker_patterns.exception.*;
 import com.circuitbreaker.circuit_breaker_patterns.service.*;
+import io.github.resilience4j.bulkhead.*;
 import io.github.resilience4j.circuitbreaker.*;
 import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.reactor.bulkhead.operator.*;
+import io.github.resilience4j.reactor.circuitbreaker.operator.*;
+import io.github.resilience4j.reactor.timelimiter.*;
+import io.github.resilience4j.timelimiter.*;
 import io.github.resilience4j.springboot3.circuitbreaker.autoconfigure.*;
+import jakarta.annotation.*;
 import lombok.*;
 import lombok.extern.slf4j.*;
 import org.springframework.cloud.client.circuitbreaker.*;
+import org.springframework.scheduling.annotation.*;
 import org.springframework.stereotype.*;
+import reactor.core.publisher.*;
+import reactor.util.retry.*;
 
+import java.time.*;
+import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 import java.util.function.*;
 
 @Slf4j
@@ -20,95 +33,683 @@ import java.util.function.*;
 @RequiredArgsConstructor
 public class CircuitBreakerServiceImpl implements CircuitBreakerService {
 
+    // Last-use timestamps are only written when they moved by more than this, so hot services do not contend on them
+    private static final long TOUCH_RESOLUTION_NANOS = TimeUnit.SECONDS.toNanos(1);
+
     private final CircuitBrakerProperties circuitBrakerProperties;
     private final CircuitBreakerRegistry circuitBreakerRegistry;
-    private final ConcurrentHashMap<ServiceType, CircuitBreaker> circuitBreakerCache = new ConcurrentHashMap<>();
+    private final TimeLimiterRegistry timeLimiterRegistry;
+    private final BulkheadRegistry bulkheadRegistry;
+    private final ThreadPoolBulkheadRegistry threadPoolBulkheadRegistry;
+    private final GuardedCallExecutor guardedCallExecutor;
+    private final FallbackEventLogger fallbackEventLogger;
+    private final GuardedCallMetrics guardedCallMetrics;
+    private final RetryBudget retryBudget;
+    private final ConcurrentHashMap<String, GuardedService> services = new ConcurrentHashMap<>();
+
+    // Everything guarding one service, looked up once per call. Components are swapped in place on reconfiguration
+    // (always inside a compute on the services map), calls in progress finish on the instances they started with.
+    private static final class GuardedService {
+        private final String name;
+        private volatile CircuitBrakerProperties.ServiceConfig config;
+        private volatile CircuitBreaker circuitBreaker;
+        private volatile TimeLimiter timeLimiter;
+        private volatile Bulkhead bulkhead;
+        private volatile ThreadPoolBulkhead threadPoolBulkhead;
+        private volatile AdaptiveConcurrencyLimit concurrencyLimit;
+        private volatile long lastUsedAt;
+
+        private GuardedService(String name, CircuitBrakerProperties.ServiceConfig config) {
+            this.name = name;
+            this.config = config;
+            this.lastUsedAt = System.nanoTime();
+        }
+
+        private void touch(long now) {
+            if (now - lastUsedAt > TOUCH_RESOLUTION_NANOS) {
+                lastUsedAt = now;
+            }
+        }
+    }
 
     @Override
-    public <T> T executeWithCircuitBreaker(ServiceType serviceType, Supplier<T> operation) {
-        CircuitBreaker circuitBreaker = getOrCreateCircuitBreaker(serviceType);
-        return circuitBreaker.executeSupplier(operation);
+    public <T> T executeWithCircuitBreaker(String serviceName, String caller, Supplier<T> operation) {
+        try {
+            return executeGuarded(serviceName, caller, operation, null);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Guarded call failed for service " + serviceName + ": " + e.getMessage(), e);
+        }
     }
 
     @Override
-    public <T> T executeWithCircuitBreaker(ServiceType serviceType, Supplier<T> operation, Supplier<T> fallback) {
-        CircuitBreaker circuitBreaker = getOrCreateCircuitBreaker(serviceType);
+    public <T> T executeWithCircuitBreaker(String serviceName, String caller, Supplier<T> operation, Supplier<T> fallback) {
         try {
-            return circuitBreaker.executeSupplier(operation);
+            return executeGuarded(serviceName, caller, operation, fallback);
         } catch (Exception e) {
-            log.warn("Circuit breaker fallback triggered for service: {}", serviceType.getServiceName(), e);
+            fallbackEventLogger.record(serviceName, FallbackReason.of(e), e);
             return fallback.get();
         }
     }
 
     @Override
-    public void resetCircuitBreaker(ServiceType serviceType) {
-        CircuitBreaker circuitBreaker = circuitBreakerCache.get(serviceType);
-        if (circuitBreaker != null) {
-            circuitBreaker.reset();
-            log.info("Circuit breaker reset for service: {}", serviceType.getServiceName());
+    public <T> Mono<T> executeReactive(String serviceName, String caller, Mono<T> operation) {
+        return guardReactive(serviceName, caller, operation, false);
+    }
+
+    @Override
+    public <T> Mono<T> executeReactive(String serviceName, String caller, Mono<T> operation, Function<Throwable, Mono<T>> fallback) {
+        return guardReactive(serviceName, caller, operation, true)
+                .onErrorResume(e -> {
+                    fallbackEventLogger.record(serviceName, FallbackReason.of(e), e);
+                    return fallback.apply(e);
+                });
+    }
+
+    @Override
+    public void resetCircuitBreaker(String serviceName) {
+        GuardedService service = services.get(serviceName);
+        if (service != null) {
+            service.circuitBreaker.reset();
+            log.info("Circuit breaker reset for service: {}", serviceName);
         }
     }
 
     @Override
-    public String getCircuitBreakerState(ServiceType serviceType) {
-        CircuitBreaker circuitBreaker = getOrCreateCircuitBreaker(serviceType);
-        return circuitBreaker.getState().toString();
+    public String getCircuitBreakerState(String serviceName) {
+        return getOrCreateService(serviceName).circuitBreaker.getState().toString();
     }
 
     @Override
-    public void forceCircuitBreakerState(ServiceType serviceType, String state) {
-        CircuitBreaker circuitBreaker = getOrCreateCircuitBreaker(serviceType);
+    public void forceCircuitBreakerState(String serviceName, String state) {
+        CircuitBreaker circuitBreaker = getOrCreateService(serviceName).circuitBreaker;
         try {
             switch (state.toUpperCase()) {
                 case "OPEN":
                     circuitBreaker.transitionToOpenState();
-                    log.info("Circuit breaker forced to OPEN for service: {}", serviceType.getServiceName());
+                    log.info("Circuit breaker forced to OPEN for service: {}", serviceName);
                     break;
                 case "HALF_OPEN":
                 case "HALF-OPEN":
                 case "HALFOPEN":
                     circuitBreaker.transitionToHalfOpenState();
-                    log.info("Circuit breaker forced to HALF_OPEN for service: {}", serviceType.getServiceName());
+                    log.info("Circuit breaker forced to HALF_OPEN for service: {}", serviceName);
                     break;
                 case "CLOSED":
                     circuitBreaker.transitionToClosedState();
-                    log.info("Circuit breaker forced to CLOSED for service: {}", serviceType.getServiceName());
+                    log.info("Circuit breaker forced to CLOSED for service: {}", serviceName);
                     break;
                 default:
                     log.warn("Unknown circuit breaker state requested: {}", state);
             }
         } catch (Exception e) {
-            log.error("Failed to force circuit breaker state for {}: {}", serviceType.getServiceName(), e.getMessage(), e);
+            log.error("Failed to force circuit breaker state for {}: {}", serviceName, e.getMessage(), e);
             throw e;
         }
     }
 
-    private CircuitBreaker getOrCreateCircuitBreaker(ServiceType serviceType) {
-        return circuitBreakerCache.computeIfAbsent(serviceType, this::createCircuitBreaker);
+    // Live settings and window metrics of the breaker; adaptive tuning may have moved them away from application.yml
+    @Override
+    public Map<String, Object> getCircuitBreakerDetails(String serviceName) {
+        GuardedService service = getOrCreateService(serviceName);
+        CircuitBreaker circuitBreaker = service.circuitBreaker;
+        CircuitBreakerConfig config = circuitBreaker.getCircuitBreakerConfig();
+        CircuitBreaker.Metrics metrics = circuitBreaker.getMetrics();
+
+        Map<String, Object> configDetails = new LinkedHashMap<>();
+        configDetails.put("slidingWindowType", config.getSlidingWindowType().name());
+        configDetails.put("slidingWindowSize", config.getSlidingWindowSize());
+        configDetails.put("minimumNumberOfCalls", config.getMinimumNumberOfCalls());
+        configDetails.put("failureRateThreshold", config.getFailureRateThreshold());
+        configDetails.put("slowCallDurationThreshold", config.getSlowCallDurationThreshold().toString());
+        configDetails.put("slowCallRateThreshold", config.getSlowCallRateThreshold());
+        configDetails.put("permittedNumberOfCallsInHalfOpenState", config.getPermittedNumberOfCallsInHalfOpenState());
+
+        // Rates are -1 until minimumNumberOfCalls calls have been recorded
+        Map<String, Object> metricDetails = new LinkedHashMap<>();
+        metricDetails.put("failureRate", metrics.getFailureRate());
+        metricDetails.put("slowCallRate", metrics.getSlowCallRate());
+        metricDetails.put("bufferedCalls", metrics.getNumberOfBufferedCalls());
+        metricDetails.put("failedCalls", metrics.getNumberOfFailedCalls());
+        metricDetails.put("slowCalls", metrics.getNumberOfSlowCalls());
+        metricDetails.put("notPermittedCalls", metrics.getNumberOfNotPermittedCalls());
+
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("state", circuitBreaker.getState().toString());
+        details.put("config", configDetails);
+        details.put("metrics", metricDetails);
+        AdaptiveConcurrencyLimit concurrencyLimit = service.concurrencyLimit;
+        if (concurrencyLimit != null) {
+            details.put("concurrencyLimit", Map.of("limit", concurrencyLimit.getLimit(), "inFlight", concurrencyLimit.getInFlight()));
+        }
+        return details;
+    }
+
+    @Override
+    public CircuitBreakerConfig getCircuitBreakerConfig(String serviceName) {
+        return getOrCreateService(serviceName).circuitBreaker.getCircuitBreakerConfig();
+    }
+
+    // resilience4j configs are immutable, so a new breaker replaces the current one and takes over its state.
+    // Its sliding window starts empty and an OPEN wait period starts over.
+    @Override
+    public void reconfigureCircuitBreaker(String serviceName, CircuitBreakerConfig config) {
+        getOrCreateService(serviceName);
+        services.computeIfPresent(serviceName, (name, service) -> {
+            service.circuitBreaker = replaceCircuitBreaker(service.circuitBreaker, config);
+            return service;
+        });
+    }
+
+    // Hot reload: only components whose settings changed are swapped, the others keep their metrics. A service
+    // without a breaker yet has nothing to swap, it picks up the new settings from the properties when first used.
+    @Override
+    public List<String> applyServiceConfig(String serviceName, CircuitBrakerProperties.ServiceConfig config) {
+        List<String> changed = new ArrayList<>();
+        services.computeIfPresent(serviceName, (name, service) -> {
+            CircuitBrakerProperties.ServiceConfig previous = service.config;
+            if (previous.equals(config)) {
+                return service;
+            }
+            if (!hasSameCircuitBreakerSettings(previous, config)) {
+                service.circuitBreaker = replaceCircuitBreaker(service.circuitBreaker, buildCircuitBreakerConfig(config));
+                changed.add("circuitBreaker");
+            }
+            if (!previous.getTimeoutDuration().equals(config.getTimeoutDuration())) {
+                TimeLimiter replacement = TimeLimiter.of(name, buildTimeLimiterConfig(config));
+                addTimeoutLogging(replacement);
+                timeLimiterRegistry.replace(name, replacement);
+                service.timeLimiter = replacement;
+                changed.add("timeLimiter");
+            }
+            if (!previous.getBulkhead().equals(config.getBulkhead())) {
+                reloadBulkheads(service, config.getBulkhead());
+                changed.add("bulkhead");
+            }
+            if (previous.getMaxConcurrentExecutions() != config.getMaxConcurrentExecutions()) {
+                guardedCallExecutor.resetConcurrencyCap(name);
+                changed.add("concurrencyCap");
+            }
+            if (!previous.getConcurrencyLimit().equals(config.getConcurrencyLimit())) {
+                // Calls in flight release their permits on the limit they were admitted by
+                service.concurrencyLimit = createConcurrencyLimit(name, config.getConcurrencyLimit());
+                changed.add("concurrencyLimit");
+            }
+            if (!previous.getAdaptive().equals(config.getAdaptive())) {
+                changed.add("adaptive");
+            }
+            service.config = config;
+            log.info("Applied reloaded config for service: {}, changed: {}", name, changed);
+            return service;
+        });
+        return changed;
+    }
+
+    @Override
+    public Set<String> getServiceNames() {
+        return Collections.unmodifiableSet(services.keySet());
+    }
+
+    @Override
+    public boolean isRegistered(String serviceName) {
+        return services.containsKey(serviceName);
+    }
+
+    // Drops breakers of services that stopped calling, so per-tenant or otherwise dynamic names do not accumulate.
+    // Services listed under circuit-breaker.services stay, and only CLOSED breakers go: forgetting an OPEN one would
+    // let the next call through to a downstream that is known to be failing. Above max-services the least recently
+    // used breakers go first, provided no call can still be running on them (none started within the timeout).
+    @Scheduled(fixedDelayString = "${circuit-breaker.registry.sweep-interval:60s}")
+    public void evictIdleServices() {
+        CircuitBrakerProperties.RegistryConfig registry = circuitBrakerProperties.getRegistry();
+        long now = System.nanoTime();
+        long idleNanos = registry.getIdleTimeout().toNanos();
+        List<GuardedService> candidates = new ArrayList<>();
+        for (GuardedService service : services.values()) {
+            if (isEvictable(service, now)) {
+                candidates.add(service);
+            }
+        }
+        candidates.sort(Comparator.comparingLong(service -> service.lastUsedAt));
+        int excess = services.size() - registry.getMaxServices();
+        int evicted = 0;
+        for (GuardedService candidate : candidates) {
+            if (now - candidate.lastUsedAt < idleNanos && evicted >= excess) {
+                break;
+            }
+            if (evict(candidate)) {
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            log.info("Evicted {} idle circuit breakers, {} remaining", evicted, services.size());
+        }
+    }
+
+    private boolean isEvictable(GuardedService service, long now) {
+        return !circuitBrakerProperties.getServices().containsKey(service.name)
+                && service.circuitBreaker.getState() == CircuitBreaker.State.CLOSED
+                && now - service.lastUsedAt > service.config.getTimeoutDuration().toNanos() + TOUCH_RESOLUTION_NANOS;
+    }
+
+    // Runs inside the map's compute so it cannot interleave with the creation of a new breaker under the same name
+    private boolean evict(GuardedService candidate) {
+        boolean[] evicted = new boolean[1];
+        services.computeIfPresent(candidate.name, (name, service) -> {
+            if (service != candidate || !isEvictable(service, System.nanoTime())) {
+                return service;
+            }
+            circuitBreakerRegistry.remove(name);
+            timeLimiterRegistry.remove(name);
+            if (service.bulkhead != null) {
+                bulkheadRegistry.remove(name);
+            }
+            if (service.threadPoolBulkhead != null) {
+                threadPoolBulkheadRegistry.remove(name);
+                closeAsync(service.threadPoolBulkhead);
+            }
+            guardedCallExecutor.resetConcurrencyCap(name);
+            guardedCallMetrics.remove(name);
+            fallbackEventLogger.remove(name);
+            log.debug("Evicted idle circuit breaker for service: {}", name);
+            evicted[0] = true;
+            return null;
+        });
+        return evicted[0];
+    }
+
+    // Permissions are checked up front (bulkhead, concurrency limit, then breaker) instead of letting resilience4j
+    // throw BulkheadFullException / CallNotPermittedException: when a fallback is given, a rejected call goes
+    // straight to it without constructing an exception. The outcome is then recorded on the breaker manually.
+    private <T> T executeGuarded(String serviceName, String caller, Supplier<T> operation, Supplier<T> fallback) throws Exception {
+        long startNanos = System.nanoTime();
+        GuardedService service = getOrCreateService(serviceName);
+        service.touch(startNanos);
+
+        Bulkhead bulkhead = service.bulkhead;
+        if (bulkhead != null && !bulkhead.tryAcquirePermission()) {
+            guardedCallMetrics.record(serviceName, caller, CallOutcome.BULKHEAD_FULL, fallback != null, System.nanoTime() - startNanos);
+            if (fallback == null) {
+                throw BulkheadFullException.createBulkheadFullException(bulkhead);
+            }
+            fallbackEventLogger.record(serviceName, FallbackReason.BULKHEAD_FULL, null);
+            return fallback.get();
+        }
+        AdaptiveConcurrencyLimit concurrencyLimit = service.concurrencyLimit;
+        boolean limitAcquired = false;
+        try {
+            if (concurrencyLimit != null) {
+                if (!concurrencyLimit.tryAcquire()) {
+                    guardedCallMetrics.record(serviceName, caller, CallOutcome.CONCURRENCY_LIMITED, fallback != null, System.nanoTime() - startNanos);
+                    if (fallback == null) {
+                        throw new ConcurrencyLimitExceededException(serviceName, concurrencyLimit.getLimit());
+                    }
+                    fallbackEventLogger.record(serviceName, FallbackReason.CONCURRENCY_LIMITED, null);
+                    return fallback.get();
+                }
+                limitAcquired = true;
+            }
+            CircuitBreaker circuitBreaker = service.circuitBreaker;
+            if (!circuitBreaker.tryAcquirePermission()) {
+                guardedCallMetrics.record(serviceName, caller, CallOutcome.NOT_PERMITTED, fallback != null, System.nanoTime() - startNanos);
+                if (fallback == null) {
+                    throw CallNotPermittedException.createCallNotPermittedException(circuitBreaker);
+                }
+                fallbackEventLogger.record(serviceName, FallbackReason.NOT_PERMITTED, null);
+                return fallback.get();
+            }
+            retryBudget.recordCall(startNanos);
+            long start = circuitBreaker.getCurrentTimestamp();
+            try {
+                T result = executeWithRetry(service, operation);
+                circuitBreaker.onResult(circuitBreaker.getCurrentTimestamp() - start, circuitBreaker.getTimestampUnit(), result);
+                if (limitAcquired) {
+                    limitAcquired = false;
+                    concurrencyLimit.onSuccess(System.nanoTime() - startNanos);
+                }
+                guardedCallMetrics.record(serviceName, caller, CallOutcome.SUCCESS, false, System.nanoTime() - startNanos);
+                return result;
+            } catch (Exception e) {
+                // Ignored exceptions (thread-pool BulkheadFullException) only release the permission
+                circuitBreaker.onError(circuitBreaker.getCurrentTimestamp() - start, circuitBreaker.getTimestampUnit(), e);
+                if (limitAcquired && e instanceof TimeoutException) {
+                    limitAcquired = false;
+                    concurrencyLimit.onTimeout();
+                }
+                guardedCallMetrics.record(serviceName, caller, CallOutcome.of(FallbackReason.of(e)), fallback != null, System.nanoTime() - startNanos);
+                throw e;
+            } catch (Error e) {
+                // Says nothing about the upstream, but the permission (possibly one of the few HALF_OPEN probes)
+                // has to come back, or the breaker never leaves HALF_OPEN
+                circuitBreaker.releasePermission();
+                guardedCallMetrics.record(serviceName, caller, CallOutcome.of(FallbackReason.of(e)), false, System.nanoTime() - startNanos);
+                throw e;
+            }
+        } finally {
+            if (limitAcquired) {
+                concurrencyLimit.release();
+            }
+            if (bulkhead != null) {
+                bulkhead.onComplete();
+            }
+        }
+    }
+
+    private <T> Mono<T> guardReactive(String serviceName, String caller, Mono<T> operation, boolean hasFallback) {
+        return Mono.defer(() -> {
+            long startNanos = System.nanoTime();
+            GuardedService service = getOrCreateService(serviceName);
+            service.touch(startNanos);
+            // Only calls the breaker lets through reach doOnSubscribe, retries resubscribe below it
+            Mono<T> guarded = withRetry(service, operation.transformDeferred(TimeLimiterOperator.of(service.timeLimiter)))
+                    .doOnSubscribe(subscription -> retryBudget.recordCall(System.nanoTime()))
+                    .transformDeferred(CircuitBreakerOperator.of(service.circuitBreaker));
+            AdaptiveConcurrencyLimit concurrencyLimit = service.concurrencyLimit;
+            if (concurrencyLimit != null) {
+                guarded = withConcurrencyLimit(serviceName, concurrencyLimit, guarded);
+            }
+            // A thread-pool bulkhead has no meaning for non-blocking calls, only the semaphore variant applies here
+            Bulkhead bulkhead = service.bulkhead;
+            if (bulkhead != null) {
+                guarded = guarded.transformDeferred(BulkheadOperator.of(bulkhead));
+            }
+            return guarded
+                    .doOnSuccess(result -> guardedCallMetrics.record(serviceName, caller, CallOutcome.SUCCESS, false, System.nanoTime() - startNanos))
+                    .doOnError(e -> guardedCallMetrics.record(serviceName, caller, CallOutcome.of(FallbackReason.of(e)), hasFallback, System.nanoTime() - startNanos));
+        });
+    }
+
+    // Exactly one of onSuccess / onTimeout / release per admitted call, whichever signal comes first
+    private <T> Mono<T> withConcurrencyLimit(String serviceName, AdaptiveConcurrencyLimit concurrencyLimit, Mono<T> guarded) {
+        return Mono.defer(() -> {
+            if (!concurrencyLimit.tryAcquire()) {
+                return Mono.error(new ConcurrencyLimitExceededException(serviceName, concurrencyLimit.getLimit()));
+            }
+            long startNanos = System.nanoTime();
+            AtomicBoolean completed = new AtomicBoolean();
+            return guarded
+                    .doOnSuccess(result -> {
+                        if (completed.compareAndSet(false, true)) {
+                            concurrencyLimit.onSuccess(System.nanoTime() - startNanos);
+                        }
+                    })
+                    .doOnError(e -> {
+                        if (!completed.compareAndSet(false, true)) {
+                            return;
+                        }
+                        if (e instanceof TimeoutException) {
+                            concurrencyLimit.onTimeout();
+                        } else {
+                            concurrencyLimit.release();
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (completed.compareAndSet(false, true)) {
+                            concurrencyLimit.release();
+                        }
+                    });
+        });
+    }
+
+    private <T> T executeWithRetry(GuardedService service, Supplier<T> operation) throws Exception {
+        CircuitBrakerProperties.RetryConfig retry = service.config.getRetry();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return executeTimeLimited(service, operation);
+            } catch (Exception e) {
+                if (!shouldRetry(service, retry, e, attempt)) {
+                    throw e;
+                }
+                Thread.sleep(backoff(retry, attempt).toMillis());
+            }
+        }
     }
 
-    private CircuitBreaker createCircuitBreaker(ServiceType serviceType) {
-        String serviceName = serviceType.getServiceName();
-        CircuitBrakerProperties.ServiceConfig config = circuitBrakerProperties.getServices()
-                .getOrDefault(serviceName, new CircuitBrakerProperties.ServiceConfig());
+    // Resubscribing re-runs the time limiter too, so every attempt gets the full timeout
+    private <T> Mono<T> withRetry(GuardedService service, Mono<T> attempt) {
+        CircuitBrakerProperties.RetryConfig retry = service.config.getRetry();
+        if (retry.getMaxAttempts() <= 1) {
+            return attempt;
+        }
+        return attempt.retryWhen(Retry.from(signals -> signals.concatMap(signal -> {
+            int attempts = (int) signal.totalRetries() + 1;
+            return shouldRetry(service, retry, signal.failure(), attempts)
+                    ? Mono.delay(backoff(retry, attempts))
+                    : Mono.error(signal.failure());
+        })));
+    }
+
+    // No retries once the breaker left CLOSED: other calls already found the upstream failing, and a HALF_OPEN
+    // probe should report what a single call sees
+    private boolean shouldRetry(GuardedService service, CircuitBrakerProperties.RetryConfig retry, Throwable error, int attempt) {
+        if (attempt >= retry.getMaxAttempts() || !isRetryable(retry, error)
+                || service.circuitBreaker.getState() != CircuitBreaker.State.CLOSED) {
+            return false;
+        }
+        boolean permitted = retryBudget.tryAcquire();
+        guardedCallMetrics.recordRetry(service.name, permitted);
+        return permitted;
+    }
+
+    private boolean isRetryable(CircuitBrakerProperties.RetryConfig retry, Throwable error) {
+        // Operations usually wrap the transport exception, so the whole cause chain is checked
+        for (Throwable cause = error; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            for (Class<? extends Throwable> retryException : retry.getRetryExceptions()) {
+                if (retryException.isInstance(cause)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
 
-        CircuitBreakerConfig circuitBreakerConfig = CircuitBreakerConfig.custom()
+    private Duration backoff(CircuitBrakerProperties.RetryConfig retry, int attempt) {
+        double millis = Math.min(retry.getMaxBackoff().toMillis(),
+                retry.getInitialBackoff().toMillis() * Math.pow(retry.getBackoffMultiplier(), attempt - 1));
+        double jitter = retry.getJitter() * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        return Duration.ofMillis(Math.max(0, Math.round(millis * (1 + jitter))));
+    }
+
+    // The time limiter cancels the operation once the per-service timeout elapses, which interrupts its thread
+    // (through InterruptibleTask on a thread-pool bulkhead); the resulting TimeoutException is recorded by the
+    // breaker as a failed call
+    private <T> T executeTimeLimited(GuardedService service, Supplier<T> operation) throws Exception {
+        TimeLimiter timeLimiter = service.timeLimiter;
+        ThreadPoolBulkhead threadPoolBulkhead = service.threadPoolBulkhead;
+        if (threadPoolBulkhead != null) {
+            return timeLimiter.executeFutureSupplier(() -> InterruptibleTask.submit(threadPoolBulkhead, operation));
+        }
+        int maxConcurrentExecutions = service.config.getMaxConcurrentExecutions();
+        return timeLimiter.executeFutureSupplier(() -> guardedCallExecutor.submit(service.name, maxConcurrentExecutions, operation));
+    }
+
+    private GuardedService getOrCreateService(String serviceName) {
+        GuardedService service = services.get(serviceName);
+        return service != null ? service : services.computeIfAbsent(serviceName, this::createService);
+    }
+
+    private GuardedService createService(String serviceName) {
+        CircuitBrakerProperties.ServiceConfig config = circuitBrakerProperties.resolve(serviceName);
+        GuardedService service = new GuardedService(serviceName, config);
+        service.circuitBreaker = registerCircuitBreaker(serviceName, buildCircuitBreakerConfig(config));
+        service.timeLimiter = createTimeLimiter(serviceName, config);
+        switch (config.getBulkhead().getType()) {
+            case SEMAPHORE -> service.bulkhead = createBulkhead(serviceName, config.getBulkhead());
+            case THREADPOOL -> service.threadPoolBulkhead = createThreadPoolBulkhead(serviceName, config.getBulkhead());
+            default -> {
+            }
+        }
+        service.concurrencyLimit = createConcurrencyLimit(serviceName, config.getConcurrencyLimit());
+        log.info("Created circuit breaker for service: {} with config: {}", serviceName, config);
+        return service;
+    }
+
+    private CircuitBreakerConfig buildCircuitBreakerConfig(CircuitBrakerProperties.ServiceConfig config) {
+        return CircuitBreakerConfig.custom()
                 .failureRateThreshold(config.getFailureRateThreshold())
                 .waitDurationInOpenState(config.getWaitDurationInOpenState())
+                .slidingWindowType(config.getSlidingWindowType() == SlidingWindowType.TIME_BASED
+                        ? CircuitBreakerConfig.SlidingWindowType.TIME_BASED
+                        : CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
                 .slidingWindowSize(config.getSlidingWindowSize())
                 .minimumNumberOfCalls(config.getMinimumNumberOfCalls())
+                .slowCallDurationThreshold(config.getSlowCallDurationThreshold())
+                .slowCallRateThreshold(config.getSlowCallRateThreshold())
                 .automaticTransitionFromOpenToHalfOpenEnabled(config.isAutomaticTransitionFromOpenToHalfOpenEnabled())
                 .permittedNumberOfCallsInHalfOpenState(config.getPermittedNumberOfCallsInHalfOpenState())
+                .ignoreExceptions(BulkheadFullException.class)
+                .writableStackTraceEnabled(false)
                 .build();
+    }
 
+    private CircuitBreaker registerCircuitBreaker(String serviceName, CircuitBreakerConfig circuitBreakerConfig) {
         CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(serviceName, circuitBreakerConfig);
+        addStateTransitionLogging(circuitBreaker);
+        return circuitBreaker;
+    }
+
+    private CircuitBreaker replaceCircuitBreaker(CircuitBreaker current, CircuitBreakerConfig config) {
+        CircuitBreaker replacement = CircuitBreaker.of(current.getName(), config);
+        transferState(current, replacement);
+        addStateTransitionLogging(replacement);
+        circuitBreakerRegistry.replace(current.getName(), replacement);
+        log.info("Reconfigured circuit breaker for service: {} in state {}", current.getName(), replacement.getState());
+        return replacement;
+    }
 
+    private void addStateTransitionLogging(CircuitBreaker circuitBreaker) {
         circuitBreaker.getEventPublisher()
                 .onStateTransition(event -> log.info("Circuit breaker state changed for {}: {} -> {}",
-                        serviceName, event.getStateTransition().getFromState(), event.getStateTransition().getToState()));
+                        circuitBreaker.getName(), event.getStateTransition().getFromState(), event.getStateTransition().getToState()));
+    }
 
-        log.info("Created circuit breaker for service: {} with config: {}", serviceName, config);
-        return circuitBreaker;
+    private boolean hasSameCircuitBreakerSettings(CircuitBrakerProperties.ServiceConfig a, CircuitBrakerProperties.ServiceConfig b) {
+        return a.getFailureRateThreshold() == b.getFailureRateThreshold()
+                && a.getWaitDurationInOpenState().equals(b.getWaitDurationInOpenState())
+                && a.getSlidingWindowType() == b.getSlidingWindowType()
+                && a.getSlidingWindowSize() == b.getSlidingWindowSize()
+                && a.getMinimumNumberOfCalls() == b.getMinimumNumberOfCalls()
+                && a.getSlowCallDurationThreshold().equals(b.getSlowCallDurationThreshold())
+                && a.getSlowCallRateThreshold() == b.getSlowCallRateThreshold()
+                && a.isAutomaticTransitionFromOpenToHalfOpenEnabled() == b.isAutomaticTransitionFromOpenToHalfOpenEnabled()
+                && a.getPermittedNumberOfCallsInHalfOpenState() == b.getPermittedNumberOfCallsInHalfOpenState();
+    }
+
+    private void transferState(CircuitBreaker from, CircuitBreaker to) {
+        switch (from.getState()) {
+            case OPEN -> to.transitionToOpenState();
+            case HALF_OPEN -> {
+                to.transitionToOpenState();
+                to.transitionToHalfOpenState();
+            }
+            case FORCED_OPEN -> to.transitionToForcedOpenState();
+            case DISABLED -> to.transitionToDisabledState();
+            case METRICS_ONLY -> to.transitionToMetricsOnlyState();
+            default -> {
+            }
+        }
+    }
+
+    private TimeLimiter createTimeLimiter(String serviceName, CircuitBrakerProperties.ServiceConfig config) {
+        TimeLimiter timeLimiter = timeLimiterRegistry.timeLimiter(serviceName, buildTimeLimiterConfig(config));
+        addTimeoutLogging(timeLimiter);
+        return timeLimiter;
+    }
+
+    private TimeLimiterConfig buildTimeLimiterConfig(CircuitBrakerProperties.ServiceConfig config) {
+        return TimeLimiterConfig.custom()
+                .timeoutDuration(config.getTimeoutDuration())
+                .cancelRunningFuture(true)
+                .build();
+    }
+
+    private AdaptiveConcurrencyLimit createConcurrencyLimit(String serviceName, CircuitBrakerProperties.ConcurrencyLimitConfig config) {
+        AdaptiveConcurrencyLimit concurrencyLimit = config.isEnabled() ? new AdaptiveConcurrencyLimit(config) : null;
+        guardedCallMetrics.registerConcurrencyLimit(serviceName, concurrencyLimit);
+        return concurrencyLimit;
+    }
+
+    private void addTimeoutLogging(TimeLimiter timeLimiter) {
+        Duration timeout = timeLimiter.getTimeLimiterConfig().getTimeoutDuration();
+        timeLimiter.getEventPublisher()
+                .onTimeout(event -> log.warn("Call to {} timed out after {}", timeLimiter.getName(), timeout));
+    }
+
+    private Bulkhead createBulkhead(String serviceName, CircuitBrakerProperties.BulkheadConfig config) {
+        Bulkhead bulkhead = bulkheadRegistry.bulkhead(serviceName, buildBulkheadConfig(config));
+        bulkhead.getEventPublisher()
+                .onCallRejected(event -> log.debug("Bulkhead rejected call to {}", serviceName));
+        log.info("Created semaphore bulkhead for service: {} with config: {}", serviceName, config);
+        return bulkhead;
+    }
+
+    private BulkheadConfig buildBulkheadConfig(CircuitBrakerProperties.BulkheadConfig config) {
+        return BulkheadConfig.custom()
+                .maxConcurrentCalls(config.getMaxConcurrentCalls())
+                .maxWaitDuration(config.getMaxWaitDuration())
+                .writableStackTraceEnabled(false)
+                .build();
+    }
+
+    private ThreadPoolBulkhead createThreadPoolBulkhead(String serviceName, CircuitBrakerProperties.BulkheadConfig config) {
+        ThreadPoolBulkheadConfig threadPoolBulkheadConfig = ThreadPoolBulkheadConfig.custom()
+                .maxThreadPoolSize(config.getMaxThreadPoolSize())
+                .coreThreadPoolSize(config.getCoreThreadPoolSize())
+                .queueCapacity(config.getQueueCapacity())
+                .writableStackTraceEnabled(false)
+                .build();
+
+        ThreadPoolBulkhead threadPoolBulkhead = threadPoolBulkheadRegistry.bulkhead(serviceName, threadPoolBulkheadConfig);
+        threadPoolBulkhead.getEventPublisher()
+                .onCallRejected(event -> log.debug("Thread-pool bulkhead rejected call to {}", serviceName));
+        log.info("Created thread-pool bulkhead for service: {} with config: {}", serviceName, config);
+        return threadPoolBulkhead;
+    }
+
+    // The semaphore bulkhead is resized in place, so permits held by calls in progress stay valid. A thread pool cannot be
+    // resized: a new one takes over and the old pool finishes its queued work in the background.
+    private void reloadBulkheads(GuardedService service, CircuitBrakerProperties.BulkheadConfig config) {
+        if (config.getType() == BulkheadType.SEMAPHORE) {
+            if (service.bulkhead != null) {
+                service.bulkhead.changeConfig(buildBulkheadConfig(config));
+            } else {
+                service.bulkhead = createBulkhead(service.name, config);
+            }
+        } else if (service.bulkhead != null) {
+            service.bulkhead = null;
+            bulkheadRegistry.remove(service.name);
+        }
+        ThreadPoolBulkhead threadPoolBulkhead = service.threadPoolBulkhead;
+        if (threadPoolBulkhead != null) {
+            threadPoolBulkheadRegistry.remove(service.name);
+            closeAsync(threadPoolBulkhead);
+        }
+        service.threadPoolBulkhead = config.getType() == BulkheadType.THREADPOOL ? createThreadPoolBulkhead(service.name, config) : null;
+    }
+
+    private void closeAsync(ThreadPoolBulkhead threadPoolBulkhead) {
+        CompletableFuture.runAsync(() -> {
+            try {
+                threadPoolBulkhead.close();
+            } catch (Exception e) {
+                log.warn("Failed to close retired thread-pool bulkhead {}: {}", threadPoolBulkhead.getName(), e.getMessage());
+            }
+        });
+    }
+
+    @PreDestroy
+    public void closeThreadPoolBulkheads() {
+        services.values().forEach(service -> {
+            ThreadPoolBulkhead threadPoolBulkhead = service.threadPoolBulkhead;
+            if (threadPoolBulkhead == null) {
+                return;
+            }
+            try {
+                threadPoolBulkhead.close();
+            } catch (Exception e) {
+                log.warn("Failed to close thread-pool bulkhead {}: {}", threadPoolBulkhead.getName(), e.getMessage());
+            }
+        });
     }
 }
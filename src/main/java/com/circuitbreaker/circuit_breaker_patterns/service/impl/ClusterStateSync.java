@@ -0,0 +1,228 @@
+package com.circuitbreaker.circuit_breaker_patterns.service.impl;
+
+import com.circuitbreaker.circuit_breaker_patterns.config.CircuitBrakerProperties;
+import com.circuitbreaker.circuit_breaker_patterns.service.*;
+import io.github.resilience4j.circuitbreaker.*;
+import jakarta.annotation.*;
+import lombok.extern.slf4j.*;
+import org.springframework.boot.autoconfigure.condition.*;
+import org.springframework.scheduling.annotation.*;
+import org.springframework.stereotype.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+// Shares breaker state between application instances (circuit-breaker.cluster.enabled). A transition is sent the
+// moment it happens, so a breaker one node opens opens on its peers within a network round trip. Window counts
+// are gossiped every heartbeat: a node whose own window is too small or too healthy to trip still opens when the
+// failures summed over all nodes cross its threshold. Only services registered or configured locally follow remote
+// state, so a peer cannot grow this node's registry.
+// A remote state only applies when it began after this node's breaker entered its current state, so a heartbeat
+// repeating an old OPEN does not undo a later reset here. Node clocks are assumed to agree within well under a
+// second. After an operator closes or resets a breaker here, summed cluster counts only reopen it once this node
+// has seen a failure of its own again.
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "circuit-breaker.cluster", name = "enabled", havingValue = "true")
+public class ClusterStateSync {
+
+    private record PeerCounts(int failedCalls, int bufferedCalls, long receivedAt) {
+    }
+
+    private final CircuitBrakerProperties circuitBrakerProperties;
+    private final CircuitBreakerService circuitBreakerService;
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final ClusterTransport clusterTransport;
+    private final String nodeId;
+    // Seeded from the clock so a node restarted under a fixed node id is not taken for a stale sender
+    private final AtomicLong sequence = new AtomicLong(System.currentTimeMillis() * 1000);
+    private final ConcurrentHashMap<String, Long> lastSequenceByNode = new ConcurrentHashMap<>();
+    // service -> node -> latest window counts
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, PeerCounts>> peerCounts = new ConcurrentHashMap<>();
+    // service -> wall-clock millis at which this node's breaker entered its state or was last reset
+    private final ConcurrentHashMap<String, Long> stateSince = new ConcurrentHashMap<>();
+    // Closed or reset by hand here, and no local failure since
+    private final Set<String> manuallyClosed = ConcurrentHashMap.newKeySet();
+    // Set while a remote state is applied, so the resulting transition is not sent back to the cluster
+    private final ThreadLocal<Boolean> applyingRemoteState = ThreadLocal.withInitial(() -> false);
+
+    public ClusterStateSync(CircuitBrakerProperties circuitBrakerProperties,
+                            CircuitBreakerService circuitBreakerService,
+                            CircuitBreakerRegistry circuitBreakerRegistry,
+                            ClusterTransport clusterTransport) {
+        this.circuitBrakerProperties = circuitBrakerProperties;
+        this.circuitBreakerService = circuitBreakerService;
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+        this.clusterTransport = clusterTransport;
+        String configuredNodeId = circuitBrakerProperties.getCluster().getNodeId();
+        this.nodeId = configuredNodeId.isBlank() ? UUID.randomUUID().toString().substring(0, 8) : configuredNodeId;
+    }
+
+    @PostConstruct
+    public void start() {
+        circuitBreakerRegistry.getAllCircuitBreakers().forEach(this::watch);
+        circuitBreakerRegistry.getEventPublisher()
+                .onEntryAdded(event -> watch(event.getAddedEntry()))
+                .onEntryReplaced(event -> watch(event.getNewEntry()))
+                .onEntryRemoved(event -> {
+                    String name = event.getRemovedEntry().getName();
+                    peerCounts.remove(name);
+                    stateSince.remove(name);
+                    manuallyClosed.remove(name);
+                });
+        clusterTransport.start(this::onMessage);
+        log.info("Cluster state sync started as node {}", nodeId);
+    }
+
+    @PreDestroy
+    public void stop() {
+        clusterTransport.close();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Scheduled(fixedDelayString = "${circuit-breaker.cluster.heartbeat-interval:500ms}")
+    public void heartbeat() {
+        long staleBefore = System.nanoTime() - circuitBrakerProperties.getCluster().getPeerTtl().toNanos();
+        for (ConcurrentHashMap<String, PeerCounts> nodes : peerCounts.values()) {
+            nodes.values().removeIf(counts -> counts.receivedAt() < staleBefore);
+        }
+        peerCounts.values().removeIf(Map::isEmpty);
+        for (CircuitBreaker circuitBreaker : circuitBreakerRegistry.getAllCircuitBreakers()) {
+            // An empty window adds nothing to the cluster's counts
+            if (circuitBreaker.getMetrics().getNumberOfBufferedCalls() > 0) {
+                publish(circuitBreaker);
+            }
+        }
+    }
+
+    private void watch(CircuitBreaker circuitBreaker) {
+        String name = circuitBreaker.getName();
+        circuitBreaker.getEventPublisher()
+                .onStateTransition(event -> {
+                    stateSince.put(name, event.getCreationTime().toInstant().toEpochMilli());
+                    CircuitBreaker.StateTransition transition = event.getStateTransition();
+                    // Breakers only close on their own from HALF_OPEN; any other way to CLOSED is an operator
+                    if (transition.getToState() == CircuitBreaker.State.CLOSED
+                            && transition.getFromState() != CircuitBreaker.State.HALF_OPEN) {
+                        manuallyClosed.add(name);
+                    } else if (transition.getToState() != CircuitBreaker.State.CLOSED) {
+                        manuallyClosed.remove(name);
+                    }
+                    if (!applyingRemoteState.get()) {
+                        publish(circuitBreaker);
+                    }
+                })
+                .onReset(event -> {
+                    stateSince.put(name, event.getCreationTime().toInstant().toEpochMilli());
+                    manuallyClosed.add(name);
+                });
+    }
+
+    private void publish(CircuitBreaker circuitBreaker) {
+        CircuitBreaker.Metrics metrics = circuitBreaker.getMetrics();
+        BreakerStateMessage message = new BreakerStateMessage(nodeId, sequence.incrementAndGet(), circuitBreaker.getName(),
+                circuitBreaker.getState(), stateSince.getOrDefault(circuitBreaker.getName(), 0L),
+                metrics.getNumberOfFailedCalls(), metrics.getNumberOfBufferedCalls());
+        try {
+            clusterTransport.publish(message);
+        } catch (RuntimeException e) {
+            // Runs on the breaker's event path: a transport problem must not fail the guarded call
+            log.warn("Failed to publish state of {} to the cluster: {}", circuitBreaker.getName(), e.getMessage());
+        }
+    }
+
+    private void onMessage(BreakerStateMessage message) {
+        if (nodeId.equals(message.nodeId()) || !isNewer(message)) {
+            return;
+        }
+        String serviceName = message.serviceName();
+        if (!circuitBreakerService.isRegistered(serviceName)
+                && !circuitBrakerProperties.getServices().containsKey(serviceName)) {
+            return;
+        }
+        // Creates the breaker of a configured service that has not been called here yet
+        circuitBreakerService.getCircuitBreakerState(serviceName);
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.find(serviceName).orElse(null);
+        if (circuitBreaker == null) {
+            return;
+        }
+        // An open peer's window is the one that opened it, that evidence already came with its OPEN transition
+        if (message.state() == CircuitBreaker.State.CLOSED) {
+            peerCounts.computeIfAbsent(serviceName, name -> new ConcurrentHashMap<>())
+                    .put(message.nodeId(), new PeerCounts(message.failedCalls(), message.bufferedCalls(), System.nanoTime()));
+        } else if (peerCounts.containsKey(serviceName)) {
+            peerCounts.get(serviceName).remove(message.nodeId());
+        }
+        CircuitBreaker.State local = circuitBreaker.getState();
+        boolean newer = message.stateSince() > stateSince.getOrDefault(serviceName, 0L);
+        if (message.state() == CircuitBreaker.State.OPEN && local == CircuitBreaker.State.CLOSED && newer) {
+            log.warn("Circuit breaker for {} opened by node {}", serviceName, message.nodeId());
+            applyRemoteState(circuitBreaker::transitionToOpenState);
+        } else if (message.state() == CircuitBreaker.State.CLOSED && local == CircuitBreaker.State.OPEN && newer) {
+            // The peer saw the service recover: probe it now instead of waiting out the open state, but let this
+            // node's own trial calls decide whether it closes
+            log.info("Circuit breaker for {} half-opened after node {} closed", serviceName, message.nodeId());
+            applyRemoteState(circuitBreaker::transitionToHalfOpenState);
+        } else if (local == CircuitBreaker.State.CLOSED) {
+            checkClusterFailureRate(circuitBreaker);
+        }
+    }
+
+    // Drops datagrams that arrive out of order: an old CLOSED must not undo a newer OPEN
+    private boolean isNewer(BreakerStateMessage message) {
+        boolean[] newer = new boolean[1];
+        lastSequenceByNode.compute(message.nodeId(), (node, last) -> {
+            newer[0] = last == null || message.sequence() > last;
+            return newer[0] ? message.sequence() : last;
+        });
+        return newer[0];
+    }
+
+    private void checkClusterFailureRate(CircuitBreaker circuitBreaker) {
+        Map<String, PeerCounts> nodes = peerCounts.get(circuitBreaker.getName());
+        if (nodes == null) {
+            return;
+        }
+        CircuitBreaker.Metrics metrics = circuitBreaker.getMetrics();
+        if (manuallyClosed.contains(circuitBreaker.getName())) {
+            // Peers' windows still hold the failures the operator overruled
+            if (metrics.getNumberOfFailedCalls() == 0) {
+                return;
+            }
+            manuallyClosed.remove(circuitBreaker.getName());
+        }
+        long staleBefore = System.nanoTime() - circuitBrakerProperties.getCluster().getPeerTtl().toNanos();
+        long failed = metrics.getNumberOfFailedCalls();
+        long buffered = metrics.getNumberOfBufferedCalls();
+        for (PeerCounts counts : nodes.values()) {
+            if (counts.receivedAt() >= staleBefore) {
+                failed += counts.failedCalls();
+                buffered += counts.bufferedCalls();
+            }
+        }
+        io.github.resilience4j.circuitbreaker.CircuitBreakerConfig config = circuitBreaker.getCircuitBreakerConfig();
+        if (buffered >= config.getMinimumNumberOfCalls()
+                && failed * 100f / buffered >= config.getFailureRateThreshold()) {
+            log.warn("Opening circuit breaker for {}: {} of {} calls failed across the cluster",
+                    circuitBreaker.getName(), failed, buffered);
+            // A transition of this node's own: sent to the peers like any other
+            circuitBreaker.transitionToOpenState();
+        }
+    }
+
+    private void applyRemoteState(Runnable transition) {
+        applyingRemoteState.set(true);
+        try {
+            transition.run();
+        } catch (IllegalStateException e) {
+            // Moved concurrently (e.g. to a forced or disabled state), nothing to apply
+            log.debug("Remote state not applied: {}", e.getMessage());
+        } finally {
+            applyingRemoteState.set(false);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.circuitbreaker.circuit_breaker_patterns.service.impl;
+
+import com.circuitbreaker.circuit_breaker_patterns.dto.*;
+import io.micrometer.core.instrument.*;
+import io.micrometer.core.instrument.binder.*;
+import lombok.extern.slf4j.*;
+import org.springframework.beans.factory.annotation.*;
+import org.springframework.scheduling.annotation.*;
+import org.springframework.stereotype.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+@Slf4j
+@Component
+public class ExternalUserCache implements MeterBinder {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final long staleTtlNanos;
+    private final ConcurrentHashMap<String, CachedUser> entries = new ConcurrentHashMap<>();
+    // Insertion order of keys, used for size-based (FIFO) eviction. A key removed and put again meanwhile can be queued
+    // twice: only the insertion whose stamp the entry still carries evicts it, an outdated one is skipped.
+    private final ConcurrentLinkedQueue<Insertion> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicLong insertions = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private record CachedUser(ExternalUserDto user, long storedAt, long insertion) {}
+
+    private record Insertion(String userId, long stamp) {}
+
+    public ExternalUserCache(@Value("${user-cache.max-size:10000}") int maxSize,
+                             @Value("${user-cache.ttl:60s}") Duration ttl,
+                             @Value("${user-cache.stale-ttl:10m}") Duration staleTtl) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.staleTtlNanos = staleTtl.toNanos();
+    }
+
+    // Fresh entries only; anything else counts as a miss and goes upstream
+    public ExternalUserDto getFresh(String userId) {
+        CachedUser cached = entries.get(userId);
+        if (cached != null && System.nanoTime() - cached.storedAt() < ttlNanos) {
+            hits.increment();
+            return cached.user();
+        }
+        misses.increment();
+        return null;
+    }
+
+    // Used from the fallback path: any entry younger than the stale TTL is better than a synthetic user
+    public ExternalUserDto getStale(String userId) {
+        CachedUser cached = entries.get(userId);
+        if (cached == null || System.nanoTime() - cached.storedAt() >= staleTtlNanos) {
+            return null;
+        }
+        staleHits.increment();
+        return cached.user();
+    }
+
+    // A refreshed entry keeps its place in the insertion order
+    public void put(String userId, ExternalUserDto user) {
+        long stamp = insertions.incrementAndGet();
+        CachedUser stored = entries.compute(userId,
+                (key, current) -> new CachedUser(user, System.nanoTime(), current == null ? stamp : current.insertion()));
+        if (stored.insertion() != stamp) {
+            return;
+        }
+        insertionOrder.add(new Insertion(userId, stamp));
+        while (entries.size() > maxSize) {
+            Insertion eldest = insertionOrder.poll();
+            if (eldest == null) {
+                break;
+            }
+            boolean[] evicted = new boolean[1];
+            entries.computeIfPresent(eldest.userId(), (key, current) -> {
+                evicted[0] = current.insertion() == eldest.stamp();
+                return evicted[0] ? null : current;
+            });
+            if (evicted[0]) {
+                evictions.increment();
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        return Map.of(
+                "size", entries.size(),
+                "maxSize", maxSize,
+                "hits", hits.sum(),
+                "misses", misses.sum(),
+                "staleHits", staleHits.sum(),
+                "evictions", evictions.sum()
+        );
+    }
+
+    @Scheduled(fixedDelayString = "${user-cache.sweep-interval:60s}")
+    public void evictExpired() {
+        long now = System.nanoTime();
+        int before = entries.size();
+        entries.values().removeIf(cached -> now - cached.storedAt() >= staleTtlNanos);
+        insertionOrder.removeIf(insertion -> !isCurrent(insertion));
+        int removed = before - entries.size();
+        if (removed > 0) {
+            evictions.add(removed);
+            log.debug("Evicted {} expired external user cache entries", removed);
+        }
+    }
+
+    private boolean isCurrent(Insertion insertion) {
+        CachedUser cached = entries.get(insertion.userId());
+        return cached != null && cached.insertion() == insertion.stamp();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("user.cache.requests", hits, LongAdder::sum).tag("result", "hit").register(registry);
+        FunctionCounter.builder("user.cache.requests", misses, LongAdder::sum).tag("result", "miss").register(registry);
+        FunctionCounter.builder("user.cache.requests", staleHits, LongAdder::sum).tag("result", "stale").register(registry);
+        FunctionCounter.builder("user.cache.evictions", evictions, LongAdder::sum).register(registry);
+        Gauge.builder("user.cache.size", entries, Map::size).register(registry);
+    }
+}
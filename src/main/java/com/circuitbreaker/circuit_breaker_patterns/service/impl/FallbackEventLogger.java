@@ -0,0 +1,85 @@
+package com.circuitbreaker.circuit_breaker_patterns.service.impl;
+
+import com.circuitbreaker.circuit_breaker_patterns.enums.*;
+import lombok.extern.slf4j.*;
+import org.springframework.beans.factory.annotation.*;
+import org.springframework.scheduling.annotation.*;
+import org.springframework.stereotype.*;
+
+import java.time.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+// Rate-limited fallback logging: at most one WARN per service and reason per interval, with the number of
+// events suppressed in between. During an outage every call falls back, so logging each one would dominate CPU.
+@Slf4j
+@Component
+public class FallbackEventLogger {
+
+    private final long intervalNanos;
+    private final ConcurrentHashMap<String, Window[]> windows = new ConcurrentHashMap<>();
+
+    private static final class Window {
+        private final LongAdder suppressed = new LongAdder();
+        private final AtomicLong lastLoggedAt;
+
+        private Window(long now, long intervalNanos) {
+            this.lastLoggedAt = new AtomicLong(now - intervalNanos);
+        }
+    }
+
+    public FallbackEventLogger(@Value("${circuit-breaker.fallback-log-interval:10s}") Duration interval) {
+        this.intervalNanos = interval.toNanos();
+    }
+
+    public void record(String serviceName, FallbackReason reason, Throwable error) {
+        Window window = getWindows(serviceName)[reason.ordinal()];
+        long now = System.nanoTime();
+        long lastLoggedAt = window.lastLoggedAt.get();
+        if (now - lastLoggedAt < intervalNanos || !window.lastLoggedAt.compareAndSet(lastLoggedAt, now)) {
+            window.suppressed.increment();
+            return;
+        }
+        long suppressed = window.suppressed.sumThenReset();
+        if (error != null) {
+            log.warn("Circuit breaker fallback triggered for service: {} ({}): {} - {} similar events suppressed",
+                    serviceName, reason, error.toString(), suppressed);
+            log.debug("Fallback cause for service: {}", serviceName, error);
+        } else {
+            log.warn("Circuit breaker fallback triggered for service: {} ({}) - {} similar events suppressed",
+                    serviceName, reason, suppressed);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${circuit-breaker.fallback-log-interval:10s}")
+    public void reportSuppressed() {
+        windows.forEach((serviceName, serviceWindows) -> {
+            for (FallbackReason reason : FallbackReason.values()) {
+                long suppressed = serviceWindows[reason.ordinal()].suppressed.sumThenReset();
+                if (suppressed > 0) {
+                    log.warn("{} fallbacks ({}) for service {} in the last {} s",
+                            suppressed, reason, serviceName, TimeUnit.NANOSECONDS.toSeconds(intervalNanos));
+                }
+            }
+        });
+    }
+
+    public void remove(String serviceName) {
+        windows.remove(serviceName);
+    }
+
+    private Window[] getWindows(String serviceName) {
+        Window[] serviceWindows = windows.get(serviceName);
+        if (serviceWindows != null) {
+            return serviceWindows;
+        }
+        return windows.computeIfAbsent(serviceName, name -> {
+            Window[] created = new Window[FallbackReason.values().length];
+            long now = System.nanoTime();
+            for (int i = 0; i < created.length; i++) {
+                created[i] = new Window(now, intervalNanos);
+            }
+            return created;
+        });
+    }
+}
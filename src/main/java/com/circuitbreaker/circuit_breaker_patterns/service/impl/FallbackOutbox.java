@@ -0,0 +1,267 @@
+package com.circuitbreaker.circuit_breaker_patterns.service.impl;
+
+import com.circuitbreaker.circuit_breaker_patterns.enums.*;
+import com.fasterxml.jackson.core.type.*;
+import com.fasterxml.jackson.databind.*;
+import jakarta.annotation.*;
+import lombok.extern.slf4j.*;
+import org.springframework.beans.factory.annotation.*;
+import org.springframework.stereotype.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+// Append-only, memory-mapped queue of work that was answered by a fallback and must be replayed later.
+// File layout: [long writePosition][long readPosition] header, then records of [int length][byte type][JSON payload].
+// Entries that cannot be delivered are moved to a dead-letter file of JSON lines, for an operator to resolve.
+@Slf4j
+@Component
+public class FallbackOutbox {
+
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 5;
+    private static final TypeReference<Map<String, Object>> PAYLOAD_TYPE = new TypeReference<>() {};
+
+    private final ObjectMapper objectMapper;
+    private final Path path;
+    private final int capacity;
+    private final Path deadLetterPath;
+
+    private FileChannel channel;
+    private FileLock fileLock;
+    private MappedByteBuffer buffer;
+    private int writePosition;
+    private int readPosition;
+    private boolean enabled;
+
+    public record Entry(OutboxEntryType type, Map<String, Object> payload, int endOffset) {}
+
+    public FallbackOutbox(ObjectMapper objectMapper,
+                          @Value("${outbox.path:data/outbox.dat}") String path,
+                          @Value("${outbox.capacity-bytes:67108864}") int capacity,
+                          @Value("${outbox.dead-letter-path:data/outbox-dead-letter.jsonl}") String deadLetterPath) {
+        this.objectMapper = objectMapper;
+        this.path = Path.of(path);
+        this.capacity = capacity;
+        this.deadLetterPath = Path.of(deadLetterPath);
+    }
+
+    @PostConstruct
+    public synchronized void open() {
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            fileLock = channel.tryLock();
+            if (fileLock == null) {
+                log.warn("Outbox file {} is locked by another process, fallbacks will not be persisted", path);
+                channel.close();
+                return;
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            writePosition = (int) buffer.getLong(0);
+            readPosition = (int) buffer.getLong(8);
+            if (writePosition < HEADER_SIZE || writePosition > capacity || readPosition < HEADER_SIZE || readPosition > writePosition) {
+                writePosition = HEADER_SIZE;
+                readPosition = HEADER_SIZE;
+                writeHeader();
+            }
+            enabled = true;
+            log.info("Outbox opened at {} with {} pending bytes", path.toAbsolutePath(), writePosition - readPosition);
+        } catch (IOException | OverlappingFileLockException e) {
+            log.warn("Outbox unavailable at {}, fallbacks will not be persisted: {}", path, e.toString());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized boolean append(OutboxEntryType type, Map<String, Object> payload) {
+        if (!enabled) {
+            return false;
+        }
+        byte[] bytes;
+        try {
+            bytes = objectMapper.writeValueAsBytes(payload);
+        } catch (IOException e) {
+            log.error("Could not serialize {} outbox entry: {}", type, e.getMessage());
+            return false;
+        }
+        int recordSize = RECORD_HEADER_SIZE + bytes.length;
+        if (writePosition + recordSize > capacity) {
+            compact();
+            if (writePosition + recordSize > capacity) {
+                log.error("Outbox is full ({} bytes), dropping {} entry", capacity, type);
+                return false;
+            }
+        }
+        buffer.putInt(writePosition, bytes.length);
+        buffer.put(writePosition + 4, type.getCode());
+        buffer.put(writePosition + RECORD_HEADER_SIZE, bytes);
+        // The header is written last so a record only becomes visible once it is complete
+        writePosition += recordSize;
+        writeHeader();
+        return true;
+    }
+
+    // A record that cannot be read is moved to the dead letters as raw bytes when it reaches the head, so it never
+    // blocks the entries behind it
+    public synchronized List<Entry> peek(int maxEntries) {
+        List<Entry> entries = new ArrayList<>();
+        int position = readPosition;
+        while (enabled && position < writePosition && entries.size() < maxEntries) {
+            int length = buffer.getInt(position);
+            if (length < 0 || length > writePosition - position - RECORD_HEADER_SIZE) {
+                // The next record cannot be found behind a bad length: everything up to the write position goes
+                if (!entries.isEmpty()) {
+                    break;
+                }
+                quarantine(position, writePosition, "Invalid record length " + length);
+                position = readPosition;
+                continue;
+            }
+            int end = position + RECORD_HEADER_SIZE + length;
+            byte code = buffer.get(position + 4);
+            OutboxEntryType type = OutboxEntryType.fromCode(code).orElse(null);
+            Map<String, Object> payload = null;
+            String problem = type == null ? "Unknown entry type code " + code : null;
+            if (type != null) {
+                byte[] bytes = new byte[length];
+                buffer.get(position + RECORD_HEADER_SIZE, bytes);
+                try {
+                    payload = objectMapper.readValue(bytes, PAYLOAD_TYPE);
+                } catch (IOException e) {
+                    problem = "Unreadable " + type + " payload: " + e.getMessage();
+                }
+            }
+            if (problem == null) {
+                entries.add(new Entry(type, payload, end));
+                position = end;
+            } else if (entries.isEmpty()) {
+                quarantine(position, end, problem);
+                position = readPosition;
+            } else {
+                break;
+            }
+        }
+        return entries;
+    }
+
+    public synchronized void acknowledge(Entry entry) {
+        if (!enabled || entry.endOffset() <= readPosition) {
+            return;
+        }
+        advanceTo(entry.endOffset());
+    }
+
+    // Moves the head entry to the dead-letter file. False when that write failed: the entry then stays queued.
+    public synchronized boolean deadLetter(Entry entry, String reason) {
+        if (!enabled || entry.endOffset() <= readPosition) {
+            return false;
+        }
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("type", entry.type().name());
+        record.put("payload", entry.payload());
+        if (!writeDeadLetter(record, reason)) {
+            return false;
+        }
+        acknowledge(entry);
+        return true;
+    }
+
+    public synchronized int pendingBytes() {
+        return enabled ? writePosition - readPosition : 0;
+    }
+
+    public synchronized void flush() {
+        if (enabled) {
+            buffer.force();
+        }
+    }
+
+    private void compact() {
+        int pending = writePosition - readPosition;
+        if (readPosition == HEADER_SIZE) {
+            return;
+        }
+        byte[] unread = new byte[pending];
+        buffer.get(readPosition, unread);
+        buffer.put(HEADER_SIZE, unread);
+        readPosition = HEADER_SIZE;
+        writePosition = HEADER_SIZE + pending;
+        writeHeader();
+        log.info("Outbox compacted, {} pending bytes retained", pending);
+    }
+
+    // Caller checked that start is the read position. Skipped even when the dead-letter write fails: it could not
+    // be delivered either way, and the entries behind it can.
+    private void quarantine(int start, int end, String problem) {
+        byte[] raw = new byte[end - start];
+        buffer.get(start, raw);
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("raw", Base64.getEncoder().encodeToString(raw));
+        if (writeDeadLetter(record, problem)) {
+            log.error("Moved {} unreadable outbox bytes to the dead letters: {}", raw.length, problem);
+        } else {
+            log.error("Skipped {} unreadable outbox bytes: {} - {}", raw.length, problem, record.get("raw"));
+        }
+        advanceTo(end);
+    }
+
+    private void advanceTo(int offset) {
+        readPosition = offset;
+        if (readPosition == writePosition) {
+            // Fully drained: rewind instead of compacting
+            readPosition = HEADER_SIZE;
+            writePosition = HEADER_SIZE;
+        }
+        writeHeader();
+    }
+
+    private boolean writeDeadLetter(Map<String, Object> record, String reason) {
+        record.put("reason", reason);
+        record.put("deadLetteredAt", System.currentTimeMillis());
+        try {
+            if (deadLetterPath.getParent() != null) {
+                Files.createDirectories(deadLetterPath.getParent());
+            }
+            byte[] line = (objectMapper.writeValueAsString(record) + "\n").getBytes(StandardCharsets.UTF_8);
+            try (FileChannel deadLetters = FileChannel.open(deadLetterPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                deadLetters.write(ByteBuffer.wrap(line));
+                // Synced before the entry leaves the outbox, so it is in one of the two files after a power loss
+                deadLetters.force(false);
+            }
+            return true;
+        } catch (IOException e) {
+            log.error("Could not write outbox dead letter to {}: {}", deadLetterPath, e.getMessage());
+            return false;
+        }
+    }
+
+    private void writeHeader() {
+        buffer.putLong(0, writePosition);
+        buffer.putLong(8, readPosition);
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (!enabled) {
+            return;
+        }
+        enabled = false;
+        try {
+            buffer.force();
+            fileLock.release();
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close outbox {}: {}", path, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.circuitbreaker.circuit_breaker_patterns.service.impl;
+
+import com.circuitbreaker.circuit_breaker_patterns.config.CircuitBrakerProperties;
+import com.circuitbreaker.circuit_breaker_patterns.enums.*;
+import jakarta.annotation.*;
+import lombok.extern.slf4j.*;
+import org.springframework.stereotype.*;
+
+import java.util.concurrent.*;
+import java.util.function.*;
+
+@Slf4j
+@Component
+public class GuardedCallExecutor {
+
+    private final ExecutorService executorService;
+    private final ConcurrentHashMap<String, Semaphore> concurrencyCaps = new ConcurrentHashMap<>();
+
+    public GuardedCallExecutor(CircuitBrakerProperties circuitBrakerProperties) {
+        ExecutorMode mode = circuitBrakerProperties.getExecutor().getMode();
+        // Guarded operations run here so the time limiter can cancel them without blocking the caller forever
+        this.executorService = mode == ExecutorMode.VIRTUAL
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("cb-guarded-vt-", 0).factory())
+                : Executors.newCachedThreadPool(Thread.ofPlatform().name("cb-guarded-", 0).daemon(true).factory());
+        log.info("Guarded call executor started in {} mode", mode);
+    }
+
+    public <T> Future<T> submit(String serviceName, int maxConcurrentExecutions, Supplier<T> operation) {
+        Semaphore cap = maxConcurrentExecutions > 0 ? getConcurrencyCap(serviceName, maxConcurrentExecutions) : null;
+        if (cap == null) {
+            return executorService.submit(operation::get);
+        }
+        return executorService.submit(() -> {
+            // Waiting here parks a (cheap) virtual thread; the time limiter still bounds the total wait
+            cap.acquire();
+            try {
+                return operation.get();
+            } finally {
+                cap.release();
+            }
+        });
+    }
+
+    private Semaphore getConcurrencyCap(String serviceName, int maxConcurrentExecutions) {
+        Semaphore cap = concurrencyCaps.get(serviceName);
+        return cap != null ? cap : concurrencyCaps.computeIfAbsent(serviceName, name -> new Semaphore(maxConcurrentExecutions, true));
+    }
+
+    // Next call creates a cap with the current limit (also used when a service is evicted); tasks holding the old one release it as they finish
+    public void resetConcurrencyCap(String serviceName) {
+        concurrencyCaps.remove(serviceName);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executorService.shutdownNow();
+        log.info("Guarded call executor shut down");
+    }
+}
@@ -0,0 +1,106 @@
+package com.circuitbreaker.circuit_breaker_patterns.service.impl;
+
+import com.circuitbreaker.circuit_breaker_patterns.enums.*;
+import io.micrometer.core.instrument.*;
+import lombok.*;
+import org.springframework.stereotype.*;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+// Latency of every guarded call as circuit.breaker.calls{service, caller, outcome, fallback}. The percentile
+// histogram is what Prometheus scrapes (histogram_quantile across instances); p50/p99/p999 are also computed
+// locally and show up under /actuator/metrics/circuit.breaker.calls.percentile.
+@Component
+@RequiredArgsConstructor
+public class GuardedCallMetrics {
+
+    public static final String CALLS_METRIC = "circuit.breaker.calls";
+    public static final String RETRIES_METRIC = "circuit.breaker.retries";
+    public static final String CONCURRENCY_LIMIT_METRIC = "circuit.breaker.concurrency.limit";
+    public static final String IN_FLIGHT_METRIC = "circuit.breaker.concurrency.in.flight";
+    private static final int OUTCOME_COUNT = CallOutcome.values().length;
+
+    private final MeterRegistry meterRegistry;
+    // service -> caller -> timers indexed by outcome ordinal, doubled for the fallback flag. Timers are
+    // registered on first use so outcomes a caller never sees do not publish empty histograms.
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, AtomicReferenceArray<Timer>>> timers = new ConcurrentHashMap<>();
+
+    public void record(String serviceName, String caller, CallOutcome outcome, boolean fallback, long durationNanos) {
+        AtomicReferenceArray<Timer> callerTimers = getTimers(serviceName, caller);
+        int slot = outcome.ordinal() * 2 + (fallback ? 1 : 0);
+        Timer timer = callerTimers.get(slot);
+        if (timer == null) {
+            // Registration is idempotent, losing this race only costs a registry lookup
+            timer = createTimer(serviceName, caller, outcome, fallback);
+            callerTimers.set(slot, timer);
+        }
+        timer.record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // Retries are the exception, a registry lookup per retry is cheap enough
+    public void recordRetry(String serviceName, boolean permitted) {
+        meterRegistry.counter(RETRIES_METRIC, "service", serviceName, "result", permitted ? "retried" : "budget_exhausted").increment();
+    }
+
+    // Replaces the gauges of a previous limit, so they never report an instance the service no longer uses
+    public void registerConcurrencyLimit(String serviceName, AdaptiveConcurrencyLimit limit) {
+        removeConcurrencyLimit(serviceName);
+        if (limit == null) {
+            return;
+        }
+        Gauge.builder(CONCURRENCY_LIMIT_METRIC, limit, AdaptiveConcurrencyLimit::getLimit)
+                .description("Calls allowed in flight by the adaptive concurrency limit")
+                .tag("service", serviceName)
+                .register(meterRegistry);
+        Gauge.builder(IN_FLIGHT_METRIC, limit, AdaptiveConcurrencyLimit::getInFlight)
+                .description("Calls in flight under the adaptive concurrency limit")
+                .tag("service", serviceName)
+                .register(meterRegistry);
+    }
+
+    // Unregisters the meters of an evicted service so its histograms stop being exported
+    public void remove(String serviceName) {
+        meterRegistry.find(RETRIES_METRIC).tag("service", serviceName).meters().forEach(meterRegistry::remove);
+        removeConcurrencyLimit(serviceName);
+        ConcurrentHashMap<String, AtomicReferenceArray<Timer>> serviceTimers = timers.remove(serviceName);
+        if (serviceTimers == null) {
+            return;
+        }
+        serviceTimers.values().forEach(callerTimers -> {
+            for (int i = 0; i < callerTimers.length(); i++) {
+                Timer timer = callerTimers.get(i);
+                if (timer != null) {
+                    meterRegistry.remove(timer);
+                }
+            }
+        });
+    }
+
+    private void removeConcurrencyLimit(String serviceName) {
+        meterRegistry.find(CONCURRENCY_LIMIT_METRIC).tag("service", serviceName).meters().forEach(meterRegistry::remove);
+        meterRegistry.find(IN_FLIGHT_METRIC).tag("service", serviceName).meters().forEach(meterRegistry::remove);
+    }
+
+    private AtomicReferenceArray<Timer> getTimers(String serviceName, String caller) {
+        ConcurrentHashMap<String, AtomicReferenceArray<Timer>> serviceTimers = timers.get(serviceName);
+        if (serviceTimers == null) {
+            serviceTimers = timers.computeIfAbsent(serviceName, name -> new ConcurrentHashMap<>());
+        }
+        AtomicReferenceArray<Timer> callerTimers = serviceTimers.get(caller);
+        return callerTimers != null ? callerTimers
+                : serviceTimers.computeIfAbsent(caller, name -> new AtomicReferenceArray<>(OUTCOME_COUNT * 2));
+    }
+
+    private Timer createTimer(String serviceName, String caller, CallOutcome outcome, boolean fallback) {
+        return Timer.builder(CALLS_METRIC)
+                .description("Latency of calls guarded by the circuit breaker")
+                .tag("service", serviceName)
+                .tag("caller", caller)
+                .tag("outcome", outcome.getTag())
+                .tag("fallback", String.valueOf(fallback))
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
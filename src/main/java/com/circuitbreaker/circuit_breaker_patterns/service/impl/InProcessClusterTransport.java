@@ -0,0 +1,44 @@
+package com.circuitbreaker.circuit_breaker_patterns.service.impl;
+
+import com.circuitbreaker.circuit_breaker_patterns.service.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+// Delivers synchronously to the other members of the same group in this JVM
+public class InProcessClusterTransport implements ClusterTransport {
+
+    private static final ConcurrentHashMap<String, Set<InProcessClusterTransport>> GROUPS = new ConcurrentHashMap<>();
+
+    private final String group;
+    private volatile Consumer<BreakerStateMessage> listener;
+
+    public InProcessClusterTransport(String group) {
+        this.group = group;
+    }
+
+    @Override
+    public void start(Consumer<BreakerStateMessage> listener) {
+        this.listener = listener;
+        GROUPS.computeIfAbsent(group, name -> ConcurrentHashMap.newKeySet()).add(this);
+    }
+
+    @Override
+    public void publish(BreakerStateMessage message) {
+        for (InProcessClusterTransport member : GROUPS.getOrDefault(group, Set.of())) {
+            Consumer<BreakerStateMessage> memberListener = member.listener;
+            if (member != this && memberListener != null) {
+                memberListener.accept(message);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        Set<InProcessClusterTransport> members = GROUPS.get(group);
+        if (members != null) {
+            members.remove(this);
+        }
+    }
+}
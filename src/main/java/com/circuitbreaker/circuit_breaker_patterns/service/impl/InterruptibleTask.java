@@ -0,0 +1,58 @@
+package com.circuitbreaker.circuit_breaker_patterns.service.impl;
+
+import io.github.resilience4j.bulkhead.*;
+
+import java.util.concurrent.*;
+import java.util.function.*;
+
+// A ThreadPoolBulkhead hands out a CompletableFuture of its own, and cancelling that never interrupts the pool
+// thread. This task remembers the thread running it and interrupts it when the future is cancelled, so a call the
+// time limiter gave up on stops and frees its pool slot. An operation that ignores interrupts still runs to the end.
+final class InterruptibleTask<T> implements Callable<T> {
+
+    private final Supplier<T> operation;
+    private Thread worker;
+    private boolean cancelled;
+
+    private InterruptibleTask(Supplier<T> operation) {
+        this.operation = operation;
+    }
+
+    static <T> CompletableFuture<T> submit(ThreadPoolBulkhead threadPoolBulkhead, Supplier<T> operation) {
+        InterruptibleTask<T> task = new InterruptibleTask<>(operation);
+        CompletableFuture<T> future = threadPoolBulkhead.submit(task).toCompletableFuture();
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) {
+                task.cancel();
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public T call() {
+        synchronized (this) {
+            // Timed out while queued: the slot goes straight to the next task
+            if (cancelled) {
+                throw new CancellationException("Cancelled before it started");
+            }
+            worker = Thread.currentThread();
+        }
+        try {
+            return operation.get();
+        } finally {
+            synchronized (this) {
+                worker = null;
+            }
+            // A cancel that came too late for the operation must not interrupt the pool's next task
+            Thread.interrupted();
+        }
+    }
+
+    private synchronized void cancel() {
+        cancelled = true;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+}
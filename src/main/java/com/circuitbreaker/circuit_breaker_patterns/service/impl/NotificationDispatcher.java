@@ -0,0 +1,96 @@
+package com.circuitbreaker.circuit_breaker_patterns.service.impl;
+
+import jakarta.annotation.*;
+import lombok.extern.slf4j.*;
+import org.springframework.beans.factory.annotation.*;
+import org.springframework.stereotype.*;
+import reactor.core.publisher.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+@Slf4j
+@Component
+public class NotificationDispatcher {
+
+    private final int parallelism;
+    private final int maxMessages;
+    private final ExecutorService executorService = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("notification-dispatch-", 0).factory());
+
+    public NotificationDispatcher(@Value("${notification.batch.parallelism:16}") int parallelism,
+                                  @Value("${notification.batch.max-messages:50000}") int maxMessages) {
+        this.parallelism = parallelism;
+        this.maxMessages = maxMessages;
+    }
+
+    // Results in message order
+    public CompletableFuture<List<Map<String, Object>>> dispatch(List<Map<String, Object>> messages,
+                                                                 Function<Map<String, Object>, Map<String, Object>> sender) {
+        validate(messages);
+        long start = System.nanoTime();
+        List<Map<String, Object>> results = new ArrayList<>(Collections.nCopies(messages.size(), null));
+        return sends(messages, sender)
+                .doOnNext(result -> results.set((int) result.get("index"), result))
+                .then(Mono.fromCallable(() -> {
+                    log.info("Dispatched {} notifications in {} ms", messages.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    return results;
+                }))
+                .toFuture();
+    }
+
+    // Results in completion order, each emitted as its send finishes (the index field tells which message it was).
+    // Sends start only as the subscriber takes results, so a slow client holds at most parallelism of them; when it
+    // disconnects, sends not yet started are dropped and those in flight finish.
+    public Flux<Map<String, Object>> stream(List<Map<String, Object>> messages,
+                                            Function<Map<String, Object>, Map<String, Object>> sender) {
+        validate(messages);
+        return sends(messages, sender);
+    }
+
+    // A sliding window: at most parallelism sends in flight (below the NOTIFICATION_SERVICE bulkhead, so a burst is
+    // not rejected wholesale), the next one starting as soon as any result is taken, so one slow send holds up nothing
+    // but its own slot
+    private Flux<Map<String, Object>> sends(List<Map<String, Object>> messages,
+                                            Function<Map<String, Object>, Map<String, Object>> sender) {
+        return Flux.range(0, messages.size())
+                .flatMap(index -> Mono.fromFuture(() -> CompletableFuture.supplyAsync(
+                        () -> send(index, messages.get(index), sender), executorService), true), parallelism, 1);
+    }
+
+    private void validate(List<Map<String, Object>> messages) {
+        if (messages == null || messages.isEmpty()) {
+            throw new IllegalArgumentException("At least one message is required");
+        }
+        if (messages.size() > maxMessages) {
+            throw new IllegalArgumentException("Batch exceeds the maximum of " + maxMessages + " messages");
+        }
+    }
+
+    private Map<String, Object> send(int index, Map<String, Object> message,
+                                     Function<Map<String, Object>, Map<String, Object>> sender) {
+        try {
+            Map<String, Object> result = new LinkedHashMap<>(sender.apply(message));
+            result.put("index", index);
+            return result;
+        } catch (Exception e) {
+            log.warn("Notification {} in batch failed: {}", index, e.getMessage());
+            return failedResult(index, message, e.getMessage());
+        }
+    }
+
+    private Map<String, Object> failedResult(int index, Map<String, Object> message, String error) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("index", index);
+        result.put("to", message.get("to"));
+        result.put("status", "failed");
+        result.put("error", error != null ? error : "Unknown error");
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
+}
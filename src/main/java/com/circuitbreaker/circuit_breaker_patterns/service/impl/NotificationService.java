@@ -6,8 +6,10 @@ import com.circuitbreaker.circuit_breaker_patterns.service.*;
 import lombok.*;
 import lombok.extern.slf4j.*;
 import org.springframework.stereotype.*;
+import reactor.core.publisher.*;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 @Service
 @Slf4j
@@ -15,23 +17,34 @@ import java.util.*;
 public class NotificationService {
 
     private final CircuitBreakerService circuitBreakerService;
+    private final NotificationDispatcher notificationDispatcher;
+    private final FallbackOutbox fallbackOutbox;
     private final Random random = new Random();
 
+    public CompletableFuture<Map<String, Object>> sendEmailBatch(List<Map<String, Object>> emails) {
+        return notificationDispatcher.dispatch(emails, this::sendEmail).thenApply(this::summarize);
+    }
+
+    public CompletableFuture<Map<String, Object>> sendSmsBatch(List<Map<String, Object>> smsMessages) {
+        return notificationDispatcher.dispatch(smsMessages, this::sendSms).thenApply(this::summarize);
+    }
+
+    public Flux<Map<String, Object>> streamEmailBatch(List<Map<String, Object>> emails) {
+        return notificationDispatcher.stream(emails, this::sendEmail);
+    }
+
+    public Flux<Map<String, Object>> streamSmsBatch(List<Map<String, Object>> smsMessages) {
+        return notificationDispatcher.stream(smsMessages, this::sendSms);
+    }
+
     public Map<String, Object> sendEmail(Map<String, Object> emailData) {
         return circuitBreakerService.executeWithCircuitBreaker(
                 ServiceType.NOTIFICATION_SERVICE,
-                () -> {
-                    simulateEmailSending();
-                    return Map.of(
-                            "messageId", "msg_" + System.currentTimeMillis(),
-                            "to", emailData.get("to"),
-                            "subject", emailData.get("subject"),
-                            "status", "sent",
-                            "service", "notification-service"
-                    );
-                },
+                "sendEmail",
+                () -> doSendEmail(emailData),
                 () -> {
                     log.info("Fallback executed for email service");
+                    boolean persisted = fallbackOutbox.append(OutboxEntryType.EMAIL, emailData);
                     return Map.of(
                             "messageId", "fallback_msg_" + System.currentTimeMillis(),
                             "to", emailData.get("to"),
@@ -39,7 +52,8 @@ public class NotificationService {
                             "status", "queued",
                             "service", "notification-service-fallback",
                             "fallback", true,
-                            "message", "Email will be sent later when service is available"
+                            "message", "Email will be sent later when service is available",
+                            "persisted", persisted
                     );
                 }
         );
@@ -48,29 +62,64 @@ public class NotificationService {
     public Map<String, Object> sendSms(Map<String, Object> smsData) {
         return circuitBreakerService.executeWithCircuitBreaker(
                 ServiceType.NOTIFICATION_SERVICE,
-                () -> {
-                    simulateSmsSending();
-                    return Map.of(
-                            "messageId", "sms_" + System.currentTimeMillis(),
-                            "to", smsData.get("to"),
-                            "status", "sent",
-                            "service", "notification-service"
-                    );
-                },
+                "sendSms",
+                () -> doSendSms(smsData),
                 () -> {
                     log.info("Fallback executed for SMS service");
+                    boolean persisted = fallbackOutbox.append(OutboxEntryType.SMS, smsData);
                     return Map.of(
                             "messageId", "fallback_sms_" + System.currentTimeMillis(),
                             "to", smsData.get("to"),
                             "status", "queued",
                             "service", "notification-service-fallback",
                             "fallback", true,
-                            "message", "SMS will be sent later when service is available"
+                            "message", "SMS will be sent later when service is available",
+                            "persisted", persisted
                     );
                 }
         );
     }
 
+    // Outbox replay: guarded but without fallback, so a failure leaves the entry queued
+    public Map<String, Object> replayEmail(Map<String, Object> emailData) {
+        return circuitBreakerService.executeWithCircuitBreaker(ServiceType.NOTIFICATION_SERVICE, "replayEmail", () -> doSendEmail(emailData));
+    }
+
+    public Map<String, Object> replaySms(Map<String, Object> smsData) {
+        return circuitBreakerService.executeWithCircuitBreaker(ServiceType.NOTIFICATION_SERVICE, "replaySms", () -> doSendSms(smsData));
+    }
+
+    private Map<String, Object> doSendEmail(Map<String, Object> emailData) {
+        simulateEmailSending();
+        return Map.of(
+                "messageId", "msg_" + System.currentTimeMillis(),
+                "to", emailData.get("to"),
+                "subject", emailData.get("subject"),
+                "status", "sent",
+                "service", "notification-service"
+        );
+    }
+
+    private Map<String, Object> doSendSms(Map<String, Object> smsData) {
+        simulateSmsSending();
+        return Map.of(
+                "messageId", "sms_" + System.currentTimeMillis(),
+                "to", smsData.get("to"),
+                "status", "sent",
+                "service", "notification-service"
+        );
+    }
+
+    private Map<String, Object> summarize(List<Map<String, Object>> results) {
+        Map<String, Long> countsByStatus = new TreeMap<>();
+        results.forEach(result -> countsByStatus.merge(String.valueOf(result.get("status")), 1L, Long::sum));
+        return Map.of(
+                "total", results.size(),
+                "counts", countsByStatus,
+                "results", results
+        );
+    }
+
     private void simulateEmailSending() {
         try {
             Thread.sleep(150 + random.nextInt(250));
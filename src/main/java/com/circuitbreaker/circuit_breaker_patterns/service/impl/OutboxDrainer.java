@@ -0,0 +1,99 @@
+package com.circuitbreaker.circuit_breaker_patterns.service.impl;
+
+import com.circuitbreaker.circuit_breaker_patterns.service.*;
+import lombok.extern.slf4j.*;
+import org.springframework.beans.factory.annotation.*;
+import org.springframework.scheduling.annotation.*;
+import org.springframework.stereotype.*;
+
+import java.time.*;
+import java.util.*;
+
+@Slf4j
+@Component
+public class OutboxDrainer {
+
+    private final FallbackOutbox fallbackOutbox;
+    private final CircuitBreakerService circuitBreakerService;
+    private final NotificationService notificationService;
+    private final PaymentService paymentService;
+    private final int batchSize;
+    private final Duration replayDelay;
+    private final int maxAttempts;
+
+    private int headAttempts;
+
+    public OutboxDrainer(FallbackOutbox fallbackOutbox,
+                         CircuitBreakerService circuitBreakerService,
+                         NotificationService notificationService,
+                         PaymentService paymentService,
+                         @Value("${outbox.drain.batch-size:20}") int batchSize,
+                         @Value("${outbox.drain.replay-delay:50ms}") Duration replayDelay,
+                         @Value("${outbox.drain.max-attempts:5}") int maxAttempts) {
+        this.fallbackOutbox = fallbackOutbox;
+        this.circuitBreakerService = circuitBreakerService;
+        this.notificationService = notificationService;
+        this.paymentService = paymentService;
+        this.batchSize = batchSize;
+        this.replayDelay = replayDelay;
+        this.maxAttempts = maxAttempts;
+    }
+
+    // Replays at most one batch per tick, sequentially and paced, and stops at the first failure or
+    // as soon as the target breaker leaves CLOSED, so a recovering service is not flooded with backlog
+    @Scheduled(fixedDelayString = "${outbox.drain.interval:5s}")
+    public synchronized void drain() {
+        if (!fallbackOutbox.isEnabled()) {
+            return;
+        }
+        fallbackOutbox.flush();
+
+        List<FallbackOutbox.Entry> entries = fallbackOutbox.peek(batchSize);
+        int replayed = 0;
+        for (FallbackOutbox.Entry entry : entries) {
+            String state = circuitBreakerService.getCircuitBreakerState(entry.type().getServiceType());
+            if (!"CLOSED".equals(state)) {
+                log.debug("Outbox replay paused, {} is {}", entry.type().getServiceType().getServiceName(), state);
+                break;
+            }
+            try {
+                replay(entry);
+                fallbackOutbox.acknowledge(entry);
+                headAttempts = 0;
+                replayed++;
+            } catch (Exception e) {
+                if (++headAttempts >= maxAttempts) {
+                    // The client was told it is pending: kept for an operator instead of dropped. Should the
+                    // dead-letter write fail, the entry stays at the head and is tried again next tick.
+                    if (fallbackOutbox.deadLetter(entry, e.getMessage())) {
+                        log.error("Moved {} outbox entry to the dead letters after {} attempts: {}", entry.type(), headAttempts, e.getMessage());
+                        headAttempts = 0;
+                    }
+                } else {
+                    log.warn("Outbox replay of {} failed (attempt {}/{}): {}", entry.type(), headAttempts, maxAttempts, e.getMessage());
+                }
+                break;
+            }
+            pause();
+        }
+        if (replayed > 0) {
+            log.info("Replayed {} outbox entries, {} bytes pending", replayed, fallbackOutbox.pendingBytes());
+        }
+    }
+
+    private void replay(FallbackOutbox.Entry entry) {
+        switch (entry.type()) {
+            case EMAIL -> notificationService.replayEmail(entry.payload());
+            case SMS -> notificationService.replaySms(entry.payload());
+            case PAYMENT -> paymentService.replayPayment(entry.payload());
+        }
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(replayDelay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -5,49 +5,82 @@ import com.circuitbreaker.circuit_breaker_patterns.enums.*;
 import com.circuitbreaker.circuit_breaker_patterns.service.*;
 import lombok.*;
 import lombok.extern.slf4j.*;
+import org.springframework.scheduling.annotation.*;
 import org.springframework.stereotype.*;
 
+import java.time.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class PaymentService {
 
+    private static final String IDEMPOTENCY_KEY = "idempotencyKey";
+    // Providers keep idempotency keys for a day
+    private static final Duration IDEMPOTENCY_KEY_RETENTION = Duration.ofHours(24);
+
+    private record Charge(Map<String, Object> result, long chargedAt) {}
+
     private final CircuitBreakerService circuitBreakerService;
+    private final FallbackOutbox fallbackOutbox;
     private final Random random = new Random();
+    // The simulated provider's charges by idempotency key: an attempt whose key was already charged gets that
+    // charge's result instead of a second one
+    private final ConcurrentHashMap<String, CompletableFuture<Charge>> chargesByIdempotencyKey = new ConcurrentHashMap<>();
 
     public Map<String, Object> processPayment(Map<String, Object> paymentData) {
+        // One key for every attempt at this payment: the call, its retries and the outbox replay. A call that timed
+        // out here may still have gone through at the provider, the key keeps its replay from charging again.
+        String idempotencyKey = idempotencyKey(paymentData);
         return circuitBreakerService.executeWithCircuitBreaker(
                 ServiceType.PAYMENT_SERVICE,
-                () -> {
-                    simulatePaymentProcessing();
-                    return Map.of(
-                            "transactionId", "txn_" + System.currentTimeMillis(),
-                            "amount", paymentData.get("amount"),
-                            "currency", paymentData.getOrDefault("currency", "USD"),
-                            "status", "completed",
-                            "service", "payment-service"
-                    );
-                },
+                "processPayment",
+                () -> doProcessPayment(paymentData, idempotencyKey),
                 () -> {
                     log.info("Fallback executed for payment service");
+                    Map<String, Object> entry = new LinkedHashMap<>(paymentData);
+                    entry.put(IDEMPOTENCY_KEY, idempotencyKey);
+                    boolean persisted = fallbackOutbox.append(OutboxEntryType.PAYMENT, entry);
                     return Map.of(
-                            "transactionId", "fallback_txn_" + System.currentTimeMillis(),
+                            // The client finds the payment by this id once the replay charged it
+                            "transactionId", idempotencyKey,
                             "amount", paymentData.get("amount"),
                             "currency", paymentData.getOrDefault("currency", "USD"),
                             "status", "pending",
                             "service", "payment-service-fallback",
                             "fallback", true,
-                            "message", "Payment will be processed later"
+                            "message", "Payment will be processed later",
+                            "persisted", persisted
                     );
                 }
         );
     }
 
+    // Outbox replay: guarded but without fallback, so a failure leaves the entry queued
+    public Map<String, Object> replayPayment(Map<String, Object> paymentData) {
+        String idempotencyKey = idempotencyKey(paymentData);
+        return circuitBreakerService.executeWithCircuitBreaker(ServiceType.PAYMENT_SERVICE, "replayPayment",
+                () -> doProcessPayment(paymentData, idempotencyKey));
+    }
+
+    @Scheduled(fixedDelay = 1, timeUnit = TimeUnit.HOURS)
+    public void evictExpiredCharges() {
+        long expiredBefore = System.currentTimeMillis() - IDEMPOTENCY_KEY_RETENTION.toMillis();
+        chargesByIdempotencyKey.values().removeIf(charge -> charge.isDone() && charge.join().chargedAt() < expiredBefore);
+    }
+
+    // The client's own key when it sent one, so its retries of the request are not charged twice either
+    private static String idempotencyKey(Map<String, Object> paymentData) {
+        Object key = paymentData.get(IDEMPOTENCY_KEY);
+        return key instanceof String value && !value.isBlank() ? value : "txn_" + UUID.randomUUID();
+    }
+
     public Map<String, Object> getPaymentStatus(String transactionId) {
     return circuitBreakerService.executeWithCircuitBreaker(
             ServiceType.PAYMENT_SERVICE,
+            "getPaymentStatus",
             () -> {
                 simulateExternalServiceCall ();
                 return Map.of (
@@ -69,6 +102,41 @@ public class PaymentService {
     );
     }
 
+    // An attempt arriving while another with the same key is in flight gets that attempt's outcome, like at a real
+    // provider; a failed attempt charges nothing and leaves the key free. The wait is interruptible, so the time
+    // limiter still cuts off a duplicate whose first attempt hangs.
+    private Map<String, Object> doProcessPayment(Map<String, Object> paymentData, String idempotencyKey) {
+        CompletableFuture<Charge> charge = new CompletableFuture<>();
+        CompletableFuture<Charge> existing = chargesByIdempotencyKey.putIfAbsent(idempotencyKey, charge);
+        if (existing != null) {
+            try {
+                return existing.get().result();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted waiting for payment " + idempotencyKey, e);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause
+                        : new RuntimeException("Payment " + idempotencyKey + " failed", e.getCause());
+            }
+        }
+        try {
+            simulatePaymentProcessing();
+            Charge completed = new Charge(Map.of(
+                    "transactionId", idempotencyKey,
+                    "amount", paymentData.get("amount"),
+                    "currency", paymentData.getOrDefault("currency", "USD"),
+                    "status", "completed",
+                    "service", "payment-service"
+            ), System.currentTimeMillis());
+            charge.complete(completed);
+            return completed.result();
+        } catch (RuntimeException | Error e) {
+            chargesByIdempotencyKey.remove(idempotencyKey, charge);
+            charge.completeExceptionally(e);
+            throw e;
+        }
+    }
+
     private void simulatePaymentProcessing() {
         try {
             Thread.sleep(100 + random.nextInt(200));
@@ -86,8 +154,9 @@ public class PaymentService {
         try {
             Thread.sleep(50 + random.nextInt(100));
 
+            // A transport-level failure; not retried, payment-service has max-attempts 1
             if (random.nextDouble() < 0.3) {
-                throw new RuntimeException("Simulated external service failure");
+                throw new java.io.UncheckedIOException(new java.io.IOException("Simulated external service failure"));
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
@@ -0,0 +1,194 @@
+package com.circuitbreaker.circuit_breaker_patterns.service.impl;
+
+import com.circuitbreaker.circuit_breaker_patterns.config.CircuitBrakerProperties;
+import io.github.resilience4j.circuitbreaker.*;
+import io.github.resilience4j.reactor.circuitbreaker.operator.*;
+import io.micrometer.core.instrument.*;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.*;
+import lombok.*;
+import lombok.extern.slf4j.*;
+import org.springframework.stereotype.*;
+import reactor.core.*;
+import reactor.core.publisher.*;
+
+import java.time.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+// Hedged requests: when the first attempt has not answered within the delay-percentile of recent attempt latencies,
+// a second one is started and the first value wins, the other attempt is cancelled. A hedge is a call of its own on the
+// service's breaker (it needs a permission and its outcome is recorded), is only sent while the breaker is CLOSED, and
+// hedges are capped at max-hedge-ratio of calls so a slow upstream does not get twice the load. A hedge is counted and
+// charged to that ratio only when it actually starts, not when the call settled while it was being scheduled.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RequestHedger {
+
+    public static final String HEDGES_METRIC = "circuit.breaker.hedges";
+    public static final String ATTEMPT_LATENCY_METRIC = "circuit.breaker.hedge.attempt.latency";
+    // Below this many timed attempts the percentile is noise and max-delay applies
+    private static final long MIN_SAMPLES = 20;
+    private static final long DELAY_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final CircuitBrakerProperties circuitBrakerProperties;
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentHashMap<String, HedgeState> states = new ConcurrentHashMap<>();
+
+    private static final class HedgeState {
+        private final double delayPercentile;
+        private final Timer attemptLatency;
+        private final Counter launched;
+        private final Counter won;
+        private final Counter rateLimited;
+        private final RollingBudget budget = new RollingBudget();
+        private volatile long delayNanos;
+        private volatile long delayRefreshedAt;
+
+        private HedgeState(String serviceName, double delayPercentile, MeterRegistry meterRegistry) {
+            this.delayPercentile = delayPercentile;
+            this.attemptLatency = Timer.builder(ATTEMPT_LATENCY_METRIC)
+                    .description("Latency of the attempts of hedged calls, a cancelled attempt with the time it ran")
+                    .tag("service", serviceName)
+                    .publishPercentiles(delayPercentile)
+                    .register(meterRegistry);
+            this.launched = meterRegistry.counter(HEDGES_METRIC, "service", serviceName, "result", "launched");
+            this.won = meterRegistry.counter(HEDGES_METRIC, "service", serviceName, "result", "won");
+            this.rateLimited = meterRegistry.counter(HEDGES_METRIC, "service", serviceName, "result", "rate_limited");
+        }
+    }
+
+    public <T> Mono<T> hedge(String serviceName, Mono<T> attempt) {
+        return Mono.defer(() -> {
+            CircuitBrakerProperties.HedgingConfig config = circuitBrakerProperties.resolve(serviceName).getHedging();
+            CircuitBreaker circuitBreaker = circuitBreakerRegistry.find(serviceName).orElse(null);
+            if (!config.isEnabled() || circuitBreaker == null) {
+                return attempt;
+            }
+            HedgeState state = getState(serviceName, config);
+            long now = System.nanoTime();
+            state.budget.recordCall(now);
+            return race(state, timed(state, attempt), timed(state, attempt).transformDeferred(CircuitBreakerOperator.of(circuitBreaker)),
+                    Duration.ofNanos(delay(state, config, now)), () -> {
+                        if (circuitBreaker.getState() != CircuitBreaker.State.CLOSED) {
+                            return false;
+                        }
+                        if (!state.budget.tryAcquire(config.getMaxHedgeRatio(), 0)) {
+                            state.rateLimited.increment();
+                            return false;
+                        }
+                        state.launched.increment();
+                        return true;
+                    });
+        });
+    }
+
+    // A failure only ends the call once no other attempt is running: the primary failing before the delay fails the
+    // call right away (retries are the retry layer's job), a failure after the hedge started leaves it to the other attempt
+    private <T> Mono<T> race(HedgeState state, Mono<T> primary, Mono<T> hedge, Duration delay, BooleanSupplier mayHedge) {
+        return Mono.create(sink -> {
+            Disposable.Composite subscriptions = Disposables.composite();
+            AtomicBoolean settled = new AtomicBoolean();
+            AtomicInteger running = new AtomicInteger(1);
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            sink.onDispose(subscriptions);
+
+            BiConsumer<T, Boolean> onValue = (value, hedged) -> {
+                if (settled.compareAndSet(false, true)) {
+                    if (hedged) {
+                        state.won.increment();
+                    }
+                    subscriptions.dispose();
+                    if (value != null) {
+                        sink.success(value);
+                    } else {
+                        sink.success();
+                    }
+                }
+            };
+            Runnable onEnd = () -> {
+                if (running.decrementAndGet() == 0 && settled.compareAndSet(false, true)) {
+                    subscriptions.dispose();
+                    sink.error(failure.get());
+                }
+            };
+            Consumer<Throwable> onError = error -> {
+                failure.set(error);
+                onEnd.run();
+            };
+
+            subscriptions.add(primary.subscribe(value -> onValue.accept(value, false), onError, () -> onValue.accept(null, false)));
+            subscriptions.add(Mono.delay(delay).subscribe(tick -> {
+                if (settled.get()) {
+                    return;
+                }
+                running.incrementAndGet();
+                // Decided as the hedge subscribes: once the call has settled it completes empty and is ignored, and
+                // added to the then disposed composite it is cancelled right away
+                Mono<T> gated = Mono.defer(() -> {
+                    if (settled.get()) {
+                        return Mono.empty();
+                    }
+                    if (!mayHedge.getAsBoolean()) {
+                        onEnd.run();
+                        return Mono.never();
+                    }
+                    return hedge;
+                });
+                subscriptions.add(gated.subscribe(value -> onValue.accept(value, true), onError, () -> onValue.accept(null, true)));
+            }));
+        });
+    }
+
+    // Every attempt is timed: leaving out the slow losers would pull the delay percentile down. A cancelled attempt
+    // counts with the time it ran, a lower bound of its latency.
+    private <T> Mono<T> timed(HedgeState state, Mono<T> attempt) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            Runnable record = () -> state.attemptLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return attempt.doOnSuccess(value -> record.run())
+                    .doOnError(error -> record.run())
+                    .doOnCancel(record);
+        });
+    }
+
+    // Percentile snapshots allocate, so the delay is recomputed at most once per second
+    private long delay(HedgeState state, CircuitBrakerProperties.HedgingConfig config, long now) {
+        if (now - state.delayRefreshedAt < DELAY_REFRESH_NANOS && state.delayNanos > 0) {
+            return state.delayNanos;
+        }
+        long maxNanos = config.getMaxDelay().toNanos();
+        long delayNanos = maxNanos;
+        if (state.attemptLatency.count() >= MIN_SAMPLES) {
+            for (ValueAtPercentile value : state.attemptLatency.takeSnapshot().percentileValues()) {
+                if (value.percentile() == state.delayPercentile && value.value() > 0) {
+                    delayNanos = Math.max(config.getMinDelay().toNanos(), Math.min(maxNanos, (long) value.value(TimeUnit.NANOSECONDS)));
+                }
+            }
+        }
+        state.delayNanos = delayNanos;
+        state.delayRefreshedAt = now;
+        return delayNanos;
+    }
+
+    private HedgeState getState(String serviceName, CircuitBrakerProperties.HedgingConfig config) {
+        HedgeState state = states.get(serviceName);
+        if (state != null && state.delayPercentile == config.getDelayPercentile()) {
+            return state;
+        }
+        // The percentile is fixed when the timer is registered, a reload with another one starts a new timer
+        return states.compute(serviceName, (name, current) -> {
+            if (current != null && current.delayPercentile == config.getDelayPercentile()) {
+                return current;
+            }
+            if (current != null) {
+                meterRegistry.remove(current.attemptLatency);
+            }
+            log.info("Hedging enabled for service: {} at p{}", name, config.getDelayPercentile() * 100);
+            return new HedgeState(name, config.getDelayPercentile(), meterRegistry);
+        });
+    }
+}
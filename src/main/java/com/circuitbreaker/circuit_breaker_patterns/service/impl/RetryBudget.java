@@ -0,0 +1,24 @@
+package com.circuitbreaker.circuit_breaker_patterns.service.impl;
+
+import com.circuitbreaker.circuit_breaker_patterns.config.CircuitBrakerProperties;
+import lombok.*;
+import org.springframework.stereotype.*;
+
+// Global cap on retries across all services. During an outage every call fails and wants to retry; with the budget
+// the upstreams see at most (1 + retry-budget.ratio) times the original traffic instead of max-attempts times.
+@Component
+@RequiredArgsConstructor
+public class RetryBudget {
+
+    private final CircuitBrakerProperties circuitBrakerProperties;
+    private final RollingBudget budget = new RollingBudget();
+
+    public void recordCall(long nowNanos) {
+        budget.recordCall(nowNanos);
+    }
+
+    public boolean tryAcquire() {
+        CircuitBrakerProperties.RetryBudgetConfig config = circuitBrakerProperties.getRetryBudget();
+        return budget.tryAcquire(config.getRatio(), config.getMinRetriesPerSecond());
+    }
+}
@@ -0,0 +1,63 @@
+package com.circuitbreaker.circuit_breaker_patterns.service.impl;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+// Calls and extra attempts (retries, hedges) over a sliding window of one-second slots. An extra attempt is allowed
+// while extras stay below ratio x calls plus a per-second floor. Check and increment are not atomic together, so
+// concurrent callers may overshoot by a few: this is a bound on amplification, not an exact quota.
+public class RollingBudget {
+
+    public static final int WINDOW_SECONDS = 10;
+
+    private final Slot[] slots = new Slot[WINDOW_SECONDS];
+
+    private static final class Slot {
+        private volatile long second = Long.MIN_VALUE;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder extras = new LongAdder();
+    }
+
+    public RollingBudget() {
+        for (int i = 0; i < WINDOW_SECONDS; i++) {
+            slots[i] = new Slot();
+        }
+    }
+
+    public void recordCall(long nowNanos) {
+        slot(nowNanos).calls.increment();
+    }
+
+    public boolean tryAcquire(double ratio, int minPerSecond) {
+        long now = System.nanoTime();
+        long second = TimeUnit.NANOSECONDS.toSeconds(now);
+        long calls = 0;
+        long extras = 0;
+        for (Slot slot : slots) {
+            if (slot.second > second - WINDOW_SECONDS) {
+                calls += slot.calls.sum();
+                extras += slot.extras.sum();
+            }
+        }
+        if (extras >= calls * ratio + (double) minPerSecond * WINDOW_SECONDS) {
+            return false;
+        }
+        slot(now).extras.increment();
+        return true;
+    }
+
+    private Slot slot(long nowNanos) {
+        long second = TimeUnit.NANOSECONDS.toSeconds(nowNanos);
+        Slot slot = slots[Math.floorMod(second, WINDOW_SECONDS)];
+        if (slot.second != second) {
+            synchronized (slot) {
+                if (slot.second != second) {
+                    slot.calls.reset();
+                    slot.extras.reset();
+                    slot.second = second;
+                }
+            }
+        }
+        return slot;
+    }
+}
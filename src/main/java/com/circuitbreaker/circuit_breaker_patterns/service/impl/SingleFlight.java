@@ -0,0 +1,83 @@
+package com.circuitbreaker.circuit_breaker_patterns.service.impl;
+
+import reactor.core.publisher.*;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+// De-duplicates concurrent calls per key: the first caller runs the call, callers arriving while it is
+// in flight wait for and share its result or failure. Blocking and reactive callers share the same flight.
+public class SingleFlight<V> {
+
+    private final ConcurrentHashMap<String, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+
+    public V execute(String key, Supplier<V> call) {
+        CompletableFuture<V> promise = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, promise);
+        if (existing != null) {
+            coalesced.increment();
+            return join(existing);
+        }
+        try {
+            V result = call.get();
+            inFlight.remove(key, promise);
+            promise.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, promise);
+            promise.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public Mono<V> executeReactive(String key, Supplier<Mono<V>> call) {
+        return Mono.defer(() -> {
+            CompletableFuture<V> promise = new CompletableFuture<>();
+            CompletableFuture<V> existing = inFlight.putIfAbsent(key, promise);
+            if (existing != null) {
+                coalesced.increment();
+                return Mono.fromFuture(existing, true);
+            }
+            Mono<V> shared;
+            try {
+                shared = call.get();
+            } catch (RuntimeException | Error e) {
+                // Callers that joined meanwhile fail with the leader instead of waiting on a call that never started
+                inFlight.remove(key, promise);
+                promise.completeExceptionally(e);
+                return Mono.error(e);
+            }
+            // Subscribed independently of the leader so one caller cancelling does not cancel the shared call
+            shared.toFuture().whenComplete((result, error) -> {
+                inFlight.remove(key, promise);
+                if (error != null) {
+                    promise.completeExceptionally(error);
+                } else {
+                    promise.complete(result);
+                }
+            });
+            return Mono.fromFuture(promise, true);
+        });
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    private V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+}
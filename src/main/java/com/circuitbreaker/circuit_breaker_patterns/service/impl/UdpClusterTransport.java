@@ -0,0 +1,176 @@
+package com.circuitbreaker.circuit_breaker_patterns.service.impl;
+
+import com.circuitbreaker.circuit_breaker_patterns.service.*;
+import io.github.resilience4j.circuitbreaker.*;
+import lombok.extern.slf4j.*;
+
+import javax.crypto.*;
+import javax.crypto.spec.*;
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.security.*;
+import java.util.*;
+import java.util.function.*;
+
+// One datagram per message, sent to every peer. Binary layout: version, node id, sequence, service name,
+// state ordinal, state since, failed calls, buffered calls; strings as length-prefixed UTF-8; then an HMAC-SHA256 of all of it
+// under the cluster's shared secret. Datagrams from addresses other than the peers, or with a wrong HMAC, are
+// dropped, so only the configured nodes can move breakers here. A recorded datagram sent again is dropped as well,
+// by ClusterStateSync's per-node sequence check.
+@Slf4j
+public class UdpClusterTransport implements ClusterTransport {
+
+    private static final byte VERSION = 3;
+    // Well below the usual 1500 byte MTU, so a message is never fragmented
+    private static final int MAX_MESSAGE_SIZE = 1024;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int MAC_SIZE = 32;
+    private static final CircuitBreaker.State[] STATES = CircuitBreaker.State.values();
+
+    private final InetSocketAddress bindAddress;
+    private final List<InetSocketAddress> peers;
+    private final SecretKeySpec key;
+    private DatagramChannel channel;
+
+    public UdpClusterTransport(String bindAddress, int port, List<String> peers, String secret) {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalArgumentException("The UDP cluster transport requires circuit-breaker.cluster.secret");
+        }
+        this.bindAddress = new InetSocketAddress(bindAddress, port);
+        this.peers = peers.stream().map(UdpClusterTransport::parsePeer).toList();
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), MAC_ALGORITHM);
+    }
+
+    @Override
+    public void start(Consumer<BreakerStateMessage> listener) {
+        try {
+            channel = DatagramChannel.open().bind(bindAddress);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot bind cluster transport to UDP " + bindAddress, e);
+        }
+        Thread.ofPlatform().name("cluster-udp-receiver").daemon(true).start(() -> receive(listener));
+        log.info("Cluster transport listening on UDP {}, peers: {}", bindAddress, peers);
+    }
+
+    @Override
+    public void publish(BreakerStateMessage message) {
+        ByteBuffer buffer = sign(encode(message));
+        for (InetSocketAddress peer : peers) {
+            try {
+                channel.send(buffer.duplicate(), peer);
+            } catch (IOException e) {
+                log.debug("Cannot send breaker state to {}: {}", peer, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            log.warn("Failed to close cluster transport: {}", e.getMessage());
+        }
+    }
+
+    private void receive(Consumer<BreakerStateMessage> listener) {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_MESSAGE_SIZE);
+        while (channel.isOpen()) {
+            try {
+                buffer.clear();
+                SocketAddress sender = channel.receive(buffer);
+                buffer.flip();
+                if (!peers.contains(sender)) {
+                    log.debug("Dropped cluster message from {}, not a peer", sender);
+                    continue;
+                }
+                if (!verify(buffer)) {
+                    log.warn("Dropped cluster message from {} with an invalid signature", sender);
+                    continue;
+                }
+                listener.accept(decode(buffer));
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (Exception e) {
+                // A malformed datagram or a failing listener must not stop the receiver
+                log.debug("Dropped cluster message: {}", e.toString());
+            }
+        }
+    }
+
+    private ByteBuffer sign(ByteBuffer message) {
+        ByteBuffer signed = ByteBuffer.allocate(message.remaining() + MAC_SIZE);
+        signed.put(mac(message.duplicate()));
+        signed.put(message);
+        return signed.flip();
+    }
+
+    // On success the buffer is left positioned at the message behind the HMAC
+    private boolean verify(ByteBuffer datagram) {
+        if (datagram.remaining() <= MAC_SIZE) {
+            return false;
+        }
+        byte[] received = new byte[MAC_SIZE];
+        datagram.get(received);
+        return MessageDigest.isEqual(received, mac(datagram.duplicate()));
+    }
+
+    // Mac instances are not thread-safe, and publish runs on whichever thread moved a breaker
+    private byte[] mac(ByteBuffer message) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(key);
+            mac.update(message);
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot compute the cluster message HMAC", e);
+        }
+    }
+
+    static ByteBuffer encode(BreakerStateMessage message) {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_MESSAGE_SIZE - MAC_SIZE);
+        buffer.put(VERSION);
+        putString(buffer, message.nodeId());
+        buffer.putLong(message.sequence());
+        putString(buffer, message.serviceName());
+        buffer.put((byte) message.state().ordinal());
+        buffer.putLong(message.stateSince());
+        buffer.putInt(message.failedCalls());
+        buffer.putInt(message.bufferedCalls());
+        return buffer.flip();
+    }
+
+    static BreakerStateMessage decode(ByteBuffer buffer) {
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported cluster message version " + version);
+        }
+        return new BreakerStateMessage(getString(buffer), buffer.getLong(), getString(buffer),
+                STATES[buffer.get()], buffer.getLong(), buffer.getInt(), buffer.getInt());
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static InetSocketAddress parsePeer(String peer) {
+        int separator = peer.lastIndexOf(':');
+        if (separator <= 0) {
+            throw new IllegalArgumentException("Cluster peer must be host:port, got " + peer);
+        }
+        return new InetSocketAddress(peer.substring(0, separator), Integer.parseInt(peer.substring(separator + 1)));
+    }
+}
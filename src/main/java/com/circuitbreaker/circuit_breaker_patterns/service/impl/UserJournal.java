@@ -0,0 +1,423 @@
+package com.circuitbreaker.circuit_breaker_patterns.service.impl;
+
+import com.circuitbreaker.circuit_breaker_patterns.dto.*;
+import com.circuitbreaker.circuit_breaker_patterns.exception.*;
+import lombok.extern.slf4j.*;
+import org.springframework.beans.factory.annotation.*;
+import org.springframework.stereotype.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+import java.util.zip.*;
+
+// Persistence of UserStore: a compact binary snapshot plus write-ahead logs of the changes made since. Files under
+// user-store.persistence.path: users.snapshot and users-<generation>.wal. Both hold records of
+// [int length][int crc32c][byte op][long id], for PUT followed by [long createdAt][int length][name][int length][email].
+// The snapshot starts with [int magic][int version][long first WAL generation it does not contain][long count].
+// Replaying a PUT or DELETE twice gives the same result, so a snapshot taken while users change only has to be
+// complete up to the WAL generation it names: later generations are replayed on top of it.
+@Slf4j
+@Component
+public class UserJournal {
+
+    private static final int SNAPSHOT_MAGIC = 0x5553524E;
+    private static final int FORMAT_VERSION = 1;
+    private static final int SNAPSHOT_HEADER_SIZE = 24;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    // Far beyond a valid record (see UserDto): a larger length can only come from a torn or corrupt file
+    private static final int MAX_RECORD_SIZE = 64 * 1024;
+    // Files are mapped in windows of this size, so snapshots beyond 2 GB load as well
+    private static final long MAP_WINDOW = 1L << 30;
+    private static final String SNAPSHOT_FILE = "users.snapshot";
+    private static final String WAL_PREFIX = "users-";
+    private static final String WAL_SUFFIX = ".wal";
+
+    private final boolean persistenceEnabled;
+    private final Path directory;
+    private final boolean syncWrites;
+    private final ByteBuffer walBuffer = ByteBuffer.allocateDirect(MAX_RECORD_SIZE);
+    // Held while snapshot files are written, appends to the WAL only wait for the short rotation
+    private final Object snapshotLock = new Object();
+
+    private FileChannel lockChannel;
+    private FileChannel wal;
+    private long walGeneration;
+    private long walRecords;
+    // A failed append could not be cut off again: nothing more is appended to this WAL generation
+    private boolean walBroken;
+    private boolean enabled;
+
+    public UserJournal(@Value("${user-store.persistence.enabled:false}") boolean persistenceEnabled,
+                       @Value("${user-store.persistence.path:data/users}") String directory,
+                       @Value("${user-store.persistence.sync-writes:false}") boolean syncWrites) {
+        this.persistenceEnabled = persistenceEnabled;
+        this.directory = Path.of(directory);
+        this.syncWrites = syncWrites;
+    }
+
+    // Loads the snapshot and replays the WALs after it, then starts a new WAL generation for this run
+    public synchronized void recover(Consumer<UserResponse> put, LongConsumer delete) {
+        if (!persistenceEnabled || !lock()) {
+            return;
+        }
+        try {
+            long started = System.nanoTime();
+            long firstGeneration = 0;
+            long records = 0;
+            Path snapshot = directory.resolve(SNAPSHOT_FILE);
+            if (Files.exists(snapshot)) {
+                firstGeneration = readSnapshotGeneration(snapshot);
+                records += replay(snapshot, SNAPSHOT_HEADER_SIZE, true, put, delete);
+            }
+            long lastGeneration = firstGeneration - 1;
+            long walReplayed = 0;
+            for (long generation : walGenerations()) {
+                if (generation < firstGeneration) {
+                    Files.delete(walFile(generation));
+                    continue;
+                }
+                walReplayed += replay(walFile(generation), 0, false, put, delete);
+                lastGeneration = generation;
+            }
+            records += walReplayed;
+            openWal(lastGeneration + 1);
+            // Replayed changes are folded into a snapshot at the next opportunity
+            walRecords = walReplayed;
+            enabled = true;
+            log.info("User store recovered from {}: {} records in {} ms", directory.toAbsolutePath(), records,
+                    (System.nanoTime() - started) / 1_000_000);
+        } catch (IOException e) {
+            // Starting empty and snapshotting over the files would lose every user they hold
+            unlock();
+            throw new UncheckedIOException("Cannot recover user store from " + directory.toAbsolutePath(), e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized long getWalRecords() {
+        return walRecords;
+    }
+
+    // Changes since the last snapshot, or a broken WAL only a snapshot and a new generation can replace
+    public synchronized boolean needsSnapshot() {
+        return enabled && (walRecords > 0 || walBroken);
+    }
+
+    // Throws UserStorePersistenceException when the change could not be written, the caller must not make it then
+    public synchronized void logPut(UserResponse user) {
+        if (enabled) {
+            walBuffer.clear();
+            encodePut(walBuffer, user);
+            writeWal();
+        }
+    }
+
+    public synchronized void logDelete(long id) {
+        if (enabled) {
+            walBuffer.clear();
+            int start = beginRecord(walBuffer, DELETE, id);
+            endRecord(walBuffer, start);
+            writeWal();
+        }
+    }
+
+    // users is handed a sink and feeds it every user; the store can change meanwhile (see the class comment)
+    public void snapshot(Consumer<Consumer<UserResponse>> users) {
+        synchronized (snapshotLock) {
+            long generation;
+            synchronized (this) {
+                if (!enabled) {
+                    return;
+                }
+                try {
+                    generation = walGeneration + 1;
+                    wal.close();
+                    openWal(generation);
+                    walRecords = 0;
+                    // Nothing was appended after the broken record, the new generation starts clean
+                    walBroken = false;
+                } catch (IOException e) {
+                    log.error("Cannot start a new user WAL, snapshot skipped: {}", e.getMessage());
+                    return;
+                }
+            }
+            long started = System.nanoTime();
+            try {
+                long count = writeSnapshot(generation, users);
+                for (long old : walGenerations()) {
+                    if (old < generation) {
+                        Files.deleteIfExists(walFile(old));
+                    }
+                }
+                log.info("User store snapshot written: {} users in {} ms", count, (System.nanoTime() - started) / 1_000_000);
+            } catch (IOException | UncheckedIOException e) {
+                // The previous snapshot and all WALs since are still in place
+                log.error("User store snapshot failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    public synchronized void close() {
+        if (!enabled) {
+            return;
+        }
+        enabled = false;
+        try {
+            wal.force(false);
+            wal.close();
+        } catch (IOException e) {
+            log.warn("Failed to close user WAL: {}", e.getMessage());
+        }
+        unlock();
+    }
+
+    private boolean lock() {
+        try {
+            Files.createDirectories(directory);
+            lockChannel = FileChannel.open(directory.resolve("users.lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            if (lockChannel.tryLock() != null) {
+                return true;
+            }
+            log.warn("User store files in {} are locked by another process, users will not be persisted", directory);
+        } catch (IOException | OverlappingFileLockException e) {
+            log.warn("User store files in {} unavailable, users will not be persisted: {}", directory, e.toString());
+        }
+        unlock();
+        return false;
+    }
+
+    private void unlock() {
+        try {
+            if (lockChannel != null) {
+                // Releases the lock as well
+                lockChannel.close();
+            }
+        } catch (IOException e) {
+            log.warn("Failed to release user store lock: {}", e.getMessage());
+        }
+    }
+
+    private void openWal(long generation) throws IOException {
+        wal = FileChannel.open(walFile(generation), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        walGeneration = generation;
+        if (syncWrites) {
+            // Otherwise the synced records of a new WAL can be lost with its directory entry
+            syncDirectory();
+        }
+    }
+
+    // A write reaches the OS page cache and survives a crash of the JVM; sync-writes also survives one of the machine.
+    // A failed write is cut off again, so the records appended after it are not lost behind a torn one on replay.
+    private void writeWal() {
+        if (walBroken) {
+            throw new UserStorePersistenceException("User WAL is unusable until the next snapshot", null);
+        }
+        walBuffer.flip();
+        long position;
+        try {
+            position = wal.position();
+        } catch (IOException e) {
+            throw new UserStorePersistenceException("Cannot write the user WAL: " + e.getMessage(), e);
+        }
+        try {
+            while (walBuffer.hasRemaining()) {
+                wal.write(walBuffer);
+            }
+            if (syncWrites) {
+                wal.force(false);
+            }
+            walRecords++;
+        } catch (IOException e) {
+            try {
+                wal.truncate(position);
+            } catch (IOException truncateFailure) {
+                walBroken = true;
+                log.error("Cannot cut a failed append off the user WAL, changes are refused until the next snapshot: {}",
+                        truncateFailure.getMessage());
+            }
+            throw new UserStorePersistenceException("Cannot write the user WAL: " + e.getMessage(), e);
+        }
+    }
+
+    // Makes renames and new files in the directory durable. Platforms that cannot open a directory (Windows) keep
+    // their metadata journaled already.
+    private void syncDirectory() throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (AccessDeniedException e) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    private long writeSnapshot(long generation, Consumer<Consumer<UserResponse>> users) throws IOException {
+        Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        long[] count = new long[1];
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(4 * 1024 * 1024);
+            buffer.position(SNAPSHOT_HEADER_SIZE);
+            users.accept(user -> {
+                if (buffer.remaining() < MAX_RECORD_SIZE) {
+                    drain(channel, buffer);
+                }
+                encodePut(buffer, user);
+                count[0]++;
+            });
+            drain(channel, buffer);
+            buffer.putInt(SNAPSHOT_MAGIC).putInt(FORMAT_VERSION).putLong(generation).putLong(count[0]).flip();
+            channel.write(buffer, 0);
+            channel.force(true);
+        }
+        Files.move(temp, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // The rename must be durable before the caller deletes the WALs the old snapshot still needed
+        syncDirectory();
+        return count[0];
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.clear();
+    }
+
+    private long readSnapshotGeneration(Path snapshot) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+            }
+            header.flip();
+            if (header.remaining() < SNAPSHOT_HEADER_SIZE || header.getInt() != SNAPSHOT_MAGIC || header.getInt() != FORMAT_VERSION) {
+                throw new IOException("Not a user store snapshot: " + snapshot);
+            }
+            return header.getLong();
+        }
+    }
+
+    // Memory-mapped, window by window. A snapshot is written completely before it is renamed into place, so any
+    // damage is fatal; a WAL may end in a record torn by a crash, which is where its replay stops.
+    private long replay(Path file, long offset, boolean snapshot, Consumer<UserResponse> put, LongConsumer delete) throws IOException {
+        long records = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = offset;
+            CRC32C crc = new CRC32C();
+            while (position < size) {
+                long windowSize = Math.min(size - position, MAP_WINDOW);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+                boolean damaged = false;
+                while (window.remaining() >= RECORD_HEADER_SIZE) {
+                    int length = window.getInt(window.position());
+                    if (length <= 0 || length > MAX_RECORD_SIZE) {
+                        damaged = true;
+                        break;
+                    }
+                    if (window.remaining() < RECORD_HEADER_SIZE + length) {
+                        break;
+                    }
+                    ByteBuffer payload = window.slice(window.position() + RECORD_HEADER_SIZE, length);
+                    crc.reset();
+                    crc.update(payload.duplicate());
+                    if ((int) crc.getValue() != window.getInt(window.position() + 4)) {
+                        damaged = true;
+                        break;
+                    }
+                    apply(payload, put, delete);
+                    records++;
+                    window.position(window.position() + RECORD_HEADER_SIZE + length);
+                }
+                boolean lastWindow = position + windowSize == size;
+                position += window.position();
+                if (damaged || (lastWindow && window.hasRemaining())) {
+                    if (snapshot) {
+                        throw new IOException("Damaged user store snapshot " + file + " at offset " + position);
+                    }
+                    log.warn("User WAL {} ends in an incomplete record at offset {}, {} bytes ignored", file, position, size - position);
+                    break;
+                }
+            }
+        }
+        return records;
+    }
+
+    private static void apply(ByteBuffer payload, Consumer<UserResponse> put, LongConsumer delete) {
+        byte op = payload.get();
+        long id = payload.getLong();
+        if (op == DELETE) {
+            delete.accept(id);
+            return;
+        }
+        long createdAt = payload.getLong();
+        put.accept(new UserResponse(id, getString(payload), getString(payload), createdAt));
+    }
+
+    private static void encodePut(ByteBuffer buffer, UserResponse user) {
+        int start = beginRecord(buffer, PUT, user.id());
+        buffer.putLong(user.createdAt());
+        putString(buffer, user.name());
+        putString(buffer, user.email());
+        endRecord(buffer, start);
+    }
+
+    private static int beginRecord(ByteBuffer buffer, byte op, long id) {
+        int start = buffer.position();
+        buffer.position(start + RECORD_HEADER_SIZE);
+        buffer.put(op).putLong(id);
+        return start;
+    }
+
+    private static void endRecord(ByteBuffer buffer, int start) {
+        int length = buffer.position() - start - RECORD_HEADER_SIZE;
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(start + RECORD_HEADER_SIZE, length));
+        buffer.putInt(start, length);
+        buffer.putInt(start + 4, (int) crc.getValue());
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private List<Long> walGenerations() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(WAL_PREFIX) && name.endsWith(WAL_SUFFIX))
+                    .map(name -> name.substring(WAL_PREFIX.length(), name.length() - WAL_SUFFIX.length()))
+                    .filter(generation -> !generation.isEmpty() && generation.chars().allMatch(Character::isDigit))
+                    .map(Long::parseLong)
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path walFile(long generation) {
+        return directory.resolve(WAL_PREFIX + generation + WAL_SUFFIX);
+    }
+}
@@ -0,0 +1,331 @@
+package com.circuitbreaker.circuit_breaker_patterns.service.impl;
+
+import com.circuitbreaker.circuit_breaker_patterns.dto.*;
+import com.circuitbreaker.circuit_breaker_patterns.exception.*;
+import io.micrometer.core.instrument.*;
+import io.micrometer.core.instrument.binder.*;
+import jakarta.annotation.*;
+import org.springframework.scheduling.annotation.*;
+import org.springframework.stereotype.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+import java.util.function.*;
+
+// Local users by primitive long id, with a unique index on email. Ids are spread over stripes, each an
+// open-addressing table of parallel long[] keys / UserResponse[] values, so an entry costs the immutable record plus
+// about 20 bytes of table slots instead of a boxed key and a map node. Reads take no lock: they run as optimistic
+// StampedLock reads and are only repeated under the read lock when a write to the same stripe interleaved. Writes
+// lock a single stripe. Changes are written to UserJournal while the stripe is locked, so the log holds the changes
+// of one user in the order they were made, and before they are made: a change the journal refuses is not made and
+// its UserStorePersistenceException reaches the caller.
+@Component
+public class UserStore implements MeterBinder {
+
+    private static final int STRIPE_BITS = 6;
+    private static final int STRIPES = 1 << STRIPE_BITS;
+    private static final int INITIAL_STRIPE_CAPACITY = 16;
+    // Never a valid id: ids are handed out from a counter starting at the current time in millis
+    private static final long EMPTY = 0;
+
+    private final UserJournal userJournal;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    // Keyed by the lower-cased email
+    private final ConcurrentHashMap<String, UserResponse> emailIndex = new ConcurrentHashMap<>();
+    private final AtomicLong idCounter = new AtomicLong(System.currentTimeMillis());
+
+    // Keys and values are swapped together on resize, so an optimistic reader never pairs arrays of different sizes
+    private record Table(long[] keys, UserResponse[] values) {
+
+        private Table(int capacity) {
+            this(new long[capacity], new UserResponse[capacity]);
+        }
+    }
+
+    private static final class Stripe {
+        private final StampedLock lock = new StampedLock();
+        private Table table = new Table(INITIAL_STRIPE_CAPACITY);
+        private int size;
+    }
+
+    public UserStore(UserJournal userJournal) {
+        this.userJournal = userJournal;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    // Runs before the store is handed out, nothing else touches it meanwhile
+    @PostConstruct
+    public void recover() {
+        userJournal.recover(this::restore, id -> {
+            Stripe stripe = stripe(id);
+            long stamp = stripe.lock.writeLock();
+            try {
+                remove(stripe, id);
+            } finally {
+                stripe.lock.unlockWrite(stamp);
+            }
+        });
+        // Built once from the final state: a snapshot taken while emails moved between users may list an email twice
+        forEach(user -> {
+            emailIndex.put(emailKey(user.email()), user);
+            idCounter.accumulateAndGet(user.id(), Math::max);
+        });
+    }
+
+    // Only when users changed since the last snapshot
+    @Scheduled(fixedDelayString = "${user-store.persistence.snapshot-interval:5m}")
+    public void snapshot() {
+        if (userJournal.needsSnapshot()) {
+            userJournal.snapshot(this::forEach);
+        }
+    }
+
+    // A restart then loads one snapshot instead of replaying this run's WAL
+    @PreDestroy
+    public void close() {
+        snapshot();
+        userJournal.close();
+    }
+
+    public UserResponse get(long id) {
+        Stripe stripe = stripe(id);
+        long stamp = stripe.lock.tryOptimisticRead();
+        UserResponse user = find(stripe.table, id);
+        if (!stripe.lock.validate(stamp)) {
+            stamp = stripe.lock.readLock();
+            try {
+                user = find(stripe.table, id);
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        return user;
+    }
+
+    public UserResponse findByEmail(String email) {
+        return emailIndex.get(emailKey(email));
+    }
+
+    public UserResponse create(String name, String email) {
+        UserResponse user = new UserResponse(idCounter.incrementAndGet(), name, email, System.currentTimeMillis());
+        // Reserving the email first decides between concurrent creates; the record is complete, so a lookup by email
+        // finding it a moment before get(id) does is harmless
+        if (emailIndex.putIfAbsent(emailKey(email), user) != null) {
+            throw new EmailAlreadyInUseException(email);
+        }
+        Stripe stripe = stripe(user.id());
+        long stamp = stripe.lock.writeLock();
+        try {
+            userJournal.logPut(user);
+            put(stripe, user);
+        } catch (RuntimeException e) {
+            emailIndex.remove(emailKey(email), user);
+            throw e;
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+        return user;
+    }
+
+    // null when there is no user with this id
+    public UserResponse update(long id, String name, String email) {
+        Stripe stripe = stripe(id);
+        long stamp = stripe.lock.writeLock();
+        try {
+            UserResponse current = find(stripe.table, id);
+            if (current == null) {
+                return null;
+            }
+            UserResponse updated = new UserResponse(id, name, email, current.createdAt());
+            String currentKey = emailKey(current.email());
+            String updatedKey = emailKey(email);
+            boolean emailChanged = !currentKey.equals(updatedKey);
+            if (emailChanged && emailIndex.putIfAbsent(updatedKey, updated) != null) {
+                throw new EmailAlreadyInUseException(email);
+            }
+            try {
+                userJournal.logPut(updated);
+            } catch (RuntimeException e) {
+                if (emailChanged) {
+                    emailIndex.remove(updatedKey, updated);
+                }
+                throw e;
+            }
+            if (emailChanged) {
+                emailIndex.remove(currentKey, current);
+            } else {
+                emailIndex.replace(currentKey, current, updated);
+            }
+            put(stripe, updated);
+            return updated;
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    // The removed user, null when there was none
+    public UserResponse delete(long id) {
+        Stripe stripe = stripe(id);
+        long stamp = stripe.lock.writeLock();
+        try {
+            if (find(stripe.table, id) == null) {
+                return null;
+            }
+            userJournal.logDelete(id);
+            UserResponse removed = remove(stripe, id);
+            emailIndex.remove(emailKey(removed.email()), removed);
+            return removed;
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size;
+        }
+        return size;
+    }
+
+    // Copies one stripe at a time under its read lock, so the consumer may take as long as it needs
+    public void forEach(Consumer<UserResponse> consumer) {
+        for (Stripe stripe : stripes) {
+            List<UserResponse> users = new ArrayList<>();
+            long stamp = stripe.lock.readLock();
+            try {
+                for (UserResponse user : stripe.table.values()) {
+                    if (user != null) {
+                        users.add(user);
+                    }
+                }
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+            users.forEach(consumer);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("user.store.size", this, UserStore::size)
+                .description("Users in the local store")
+                .register(registry);
+    }
+
+    // Bounded by the table length: an optimistic read racing a write may see a table in any state, validate()
+    // then discards whatever it returned
+    private static UserResponse find(Table table, long id) {
+        long[] keys = table.keys();
+        int mask = keys.length - 1;
+        for (int i = slot(id) & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+            long key = keys[i];
+            if (key == id) {
+                return table.values()[i];
+            }
+            if (key == EMPTY) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private void restore(UserResponse user) {
+        Stripe stripe = stripe(user.id());
+        long stamp = stripe.lock.writeLock();
+        try {
+            put(stripe, user);
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    // Caller holds the stripe's write lock
+    private static void put(Stripe stripe, UserResponse user) {
+        Table table = stripe.table;
+        long[] keys = table.keys();
+        int mask = keys.length - 1;
+        int i = slot(user.id()) & mask;
+        while (keys[i] != EMPTY && keys[i] != user.id()) {
+            i = (i + 1) & mask;
+        }
+        if (keys[i] == EMPTY) {
+            keys[i] = user.id();
+            stripe.size++;
+        }
+        table.values()[i] = user;
+        // Load factor 0.75
+        if (stripe.size * 4L > keys.length * 3L) {
+            stripe.table = resize(table);
+        }
+    }
+
+    // Backward-shift deletion: entries after the removed one move up, so probe chains never need tombstones
+    private static UserResponse remove(Stripe stripe, long id) {
+        Table table = stripe.table;
+        long[] keys = table.keys();
+        UserResponse[] values = table.values();
+        int mask = keys.length - 1;
+        int i = slot(id) & mask;
+        while (keys[i] != id) {
+            if (keys[i] == EMPTY) {
+                return null;
+            }
+            i = (i + 1) & mask;
+        }
+        UserResponse removed = values[i];
+        for (int next = (i + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            int home = slot(keys[next]) & mask;
+            // Move the entry into the hole unless its home slot lies cyclically in (hole, next]
+            if (((next - home) & mask) >= ((next - i) & mask)) {
+                keys[i] = keys[next];
+                values[i] = values[next];
+                i = next;
+            }
+        }
+        keys[i] = EMPTY;
+        values[i] = null;
+        stripe.size--;
+        return removed;
+    }
+
+    private static Table resize(Table table) {
+        Table resized = new Table(table.keys().length * 2);
+        int mask = resized.keys().length - 1;
+        for (int j = 0; j < table.keys().length; j++) {
+            long key = table.keys()[j];
+            if (key != EMPTY) {
+                int i = slot(key) & mask;
+                while (resized.keys()[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                resized.keys()[i] = key;
+                resized.values()[i] = table.values()[j];
+            }
+        }
+        return resized;
+    }
+
+    private Stripe stripe(long id) {
+        return stripes[(int) mix(id) & (STRIPES - 1)];
+    }
+
+    // Bits above the stripe bits, so ids of one stripe still spread over its table
+    private static int slot(long id) {
+        return (int) (mix(id) >>> STRIPE_BITS);
+    }
+
+    // Sequential ids would otherwise fill runs of adjacent slots
+    private static long mix(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+
+    private static String emailKey(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+}
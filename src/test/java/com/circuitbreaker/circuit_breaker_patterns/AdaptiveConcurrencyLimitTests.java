@@ -0,0 +1,74 @@
+package com.circuitbreaker.circuit_breaker_patterns;
+
+import com.circuitbreaker.circuit_breaker_patterns.config.CircuitBrakerProperties;
+import com.circuitbreaker.circuit_breaker_patterns.service.impl.*;
+import org.junit.jupiter.api.*;
+
+import java.time.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class AdaptiveConcurrencyLimitTests {
+
+    private final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(new CircuitBrakerProperties.ConcurrencyLimitConfig());
+
+    @Test
+    void fastAnswersUnderFullLoadGrowTheLimit() {
+        int initial = limit.getLimit();
+        for (int i = 0; i < 20; i++) {
+            fillAndComplete(Duration.ofMillis(10));
+        }
+        assertThat(limit.getLimit()).isGreaterThan(initial);
+        assertThat(limit.getInFlight()).isZero();
+    }
+
+    @Test
+    void latencyClimbingAboveItsLongTermAverageShrinksTheLimit() {
+        for (int i = 0; i < 20; i++) {
+            fillAndComplete(Duration.ofMillis(10));
+        }
+        int unloaded = limit.getLimit();
+        for (int i = 0; i < 5; i++) {
+            fillAndComplete(Duration.ofMillis(100));
+        }
+        assertThat(limit.getLimit()).isLessThan(unloaded);
+        assertThat(limit.getInFlight()).isZero();
+    }
+
+    @Test
+    void anIdleServiceDoesNotCreepUpToTheMaximum() {
+        int initial = limit.getLimit();
+        for (int i = 0; i < 100; i++) {
+            assertThat(limit.tryAcquire()).isTrue();
+            limit.onSuccess(Duration.ofMillis(10).toNanos());
+        }
+        assertThat(limit.getLimit()).isEqualTo(initial);
+    }
+
+    @Test
+    void callsBeyondTheLimitAreRejectedAndATimeoutBacksOff() {
+        int initial = limit.getLimit();
+        for (int i = 0; i < initial; i++) {
+            assertThat(limit.tryAcquire()).isTrue();
+        }
+        assertThat(limit.tryAcquire()).isFalse();
+
+        limit.onTimeout();
+        assertThat(limit.getLimit()).isEqualTo((int) (initial * 0.9));
+        for (int i = 1; i < initial; i++) {
+            limit.release();
+        }
+        assertThat(limit.getInFlight()).isZero();
+    }
+
+    // Takes every permit the current limit allows, then completes each of them
+    private void fillAndComplete(Duration rtt) {
+        int acquired = 0;
+        while (limit.tryAcquire()) {
+            acquired++;
+        }
+        for (int i = 0; i < acquired; i++) {
+            limit.onSuccess(rtt.toNanos());
+        }
+    }
+}
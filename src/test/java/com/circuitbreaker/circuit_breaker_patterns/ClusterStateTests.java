@@ -0,0 +1,146 @@
+package com.circuitbreaker.circuit_breaker_patterns;
+
+import com.circuitbreaker.circuit_breaker_patterns.enums.ServiceType;
+import com.circuitbreaker.circuit_breaker_patterns.service.*;
+import com.circuitbreaker.circuit_breaker_patterns.service.impl.*;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "circuit-breaker.cluster.enabled=true",
+        "circuit-breaker.cluster.transport=in-process",
+        "circuit-breaker.cluster.group=cluster-tests"})
+public class ClusterStateTests {
+
+    @Autowired
+    private CircuitBreakerService circuitBreakerService;
+
+    @Test
+    void openStateIsSharedAcrossNodes() {
+        InProcessClusterTransport peer = new InProcessClusterTransport("cluster-tests");
+        List<BreakerStateMessage> received = new CopyOnWriteArrayList<>();
+        peer.start(received::add);
+        try {
+            // The peer detected the failure: this node opens without a failed call of its own
+            peer.publish(new BreakerStateMessage("peer", 1, "payment-service", CircuitBreaker.State.OPEN,
+                    System.currentTimeMillis(), 10, 10));
+            assertThat(circuitBreakerService.getCircuitBreakerState(ServiceType.PAYMENT_SERVICE)).isEqualTo("OPEN");
+
+            // A reordered, older message does not undo it
+            peer.publish(new BreakerStateMessage("peer", 0, "payment-service", CircuitBreaker.State.CLOSED,
+                    System.currentTimeMillis(), 0, 0));
+            assertThat(circuitBreakerService.getCircuitBreakerState(ServiceType.PAYMENT_SERVICE)).isEqualTo("OPEN");
+
+            // This node's own transitions reach the peer
+            circuitBreakerService.forceCircuitBreakerState(ServiceType.NOTIFICATION_SERVICE, "OPEN");
+            assertThat(received).anyMatch(message -> message.serviceName().equals("notification-service")
+                    && message.state() == CircuitBreaker.State.OPEN);
+
+            // Names this node does not know are ignored
+            peer.publish(new BreakerStateMessage("peer", 2, "unknown-service", CircuitBreaker.State.OPEN,
+                    System.currentTimeMillis(), 10, 10));
+            assertThat(circuitBreakerService.isRegistered("unknown-service")).isFalse();
+        } finally {
+            peer.close();
+            circuitBreakerService.resetCircuitBreaker(ServiceType.PAYMENT_SERVICE);
+            circuitBreakerService.resetCircuitBreaker(ServiceType.NOTIFICATION_SERVICE);
+        }
+    }
+
+    @Test
+    void failuresSummedAcrossNodesOpenTheBreaker() {
+        InProcessClusterTransport peer = new InProcessClusterTransport("cluster-tests");
+        peer.start(message -> { });
+        try {
+            // Neither node trips alone (user-service: 5 calls minimum, 80% failures), together they do
+            peer.publish(new BreakerStateMessage("peer-a", 1, "user-service", CircuitBreaker.State.CLOSED,
+                    System.currentTimeMillis(), 2, 2));
+            assertThat(circuitBreakerService.getCircuitBreakerState(ServiceType.USER_SERVICE)).isEqualTo("CLOSED");
+            peer.publish(new BreakerStateMessage("peer-b", 1, "user-service", CircuitBreaker.State.CLOSED,
+                    System.currentTimeMillis(), 3, 3));
+            assertThat(circuitBreakerService.getCircuitBreakerState(ServiceType.USER_SERVICE)).isEqualTo("OPEN");
+        } finally {
+            peer.close();
+            circuitBreakerService.resetCircuitBreaker(ServiceType.USER_SERVICE);
+        }
+    }
+
+    @Test
+    void aStaleRemoteOpenDoesNotUndoALocalReset() {
+        String serviceName = "payment-service:reset-test";
+        circuitBreakerService.getCircuitBreakerState(serviceName);
+        InProcessClusterTransport peer = new InProcessClusterTransport("cluster-tests");
+        peer.start(message -> { });
+        try {
+            long openedAt = System.currentTimeMillis() - 1000;
+            peer.publish(new BreakerStateMessage("reset-peer", 1, serviceName, CircuitBreaker.State.OPEN, openedAt, 10, 10));
+            assertThat(circuitBreakerService.getCircuitBreakerState(serviceName)).isEqualTo("OPEN");
+
+            // The operator overrules the cluster here: the peer's heartbeat repeating its OPEN does not reopen it
+            circuitBreakerService.resetCircuitBreaker(serviceName);
+            peer.publish(new BreakerStateMessage("reset-peer", 2, serviceName, CircuitBreaker.State.OPEN, openedAt, 10, 10));
+            assertThat(circuitBreakerService.getCircuitBreakerState(serviceName)).isEqualTo("CLOSED");
+            // Nor do failures still in the windows of closed peers
+            peer.publish(new BreakerStateMessage("reset-peer-b", 1, serviceName, CircuitBreaker.State.CLOSED, openedAt, 10, 10));
+            assertThat(circuitBreakerService.getCircuitBreakerState(serviceName)).isEqualTo("CLOSED");
+
+            // A peer opening after the reset does
+            peer.publish(new BreakerStateMessage("reset-peer", 3, serviceName, CircuitBreaker.State.OPEN,
+                    System.currentTimeMillis() + 1000, 10, 10));
+            assertThat(circuitBreakerService.getCircuitBreakerState(serviceName)).isEqualTo("OPEN");
+        } finally {
+            peer.close();
+            circuitBreakerService.resetCircuitBreaker(serviceName);
+        }
+    }
+
+    @Test
+    void udpTransportDeliversSignedMessagesFromPeersOnly() throws Exception {
+        int portA = freeUdpPort();
+        int portB = freeUdpPort();
+        BlockingQueue<BreakerStateMessage> received = new LinkedBlockingQueue<>();
+        try (UdpClusterTransport nodeA = new UdpClusterTransport("127.0.0.1", portA, List.of("127.0.0.1:" + portB), "secret");
+             UdpClusterTransport nodeB = new UdpClusterTransport("127.0.0.1", portB, List.of("127.0.0.1:" + portA), "secret");
+             DatagramSocket stranger = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            nodeA.start(message -> { });
+            nodeB.start(received::add);
+
+            // Not a peer: dropped whatever it sends
+            byte[] forged = new byte[64];
+            stranger.send(new DatagramPacket(forged, forged.length, InetAddress.getLoopbackAddress(), portB));
+
+            BreakerStateMessage sent = new BreakerStateMessage("node-a", 42, "payment-service:tenant-7",
+                    CircuitBreaker.State.OPEN, System.currentTimeMillis(), 7, 12);
+            nodeA.publish(sent);
+            assertThat(received.poll(5, TimeUnit.SECONDS)).isEqualTo(sent);
+        }
+
+        // A peer address with the wrong secret: dropped. Fresh ports, the closed channels may still hold the old ones.
+        portA = freeUdpPort();
+        portB = freeUdpPort();
+        try (UdpClusterTransport nodeA = new UdpClusterTransport("127.0.0.1", portA, List.of("127.0.0.1:" + portB), "guess");
+             UdpClusterTransport nodeB = new UdpClusterTransport("127.0.0.1", portB, List.of("127.0.0.1:" + portA), "secret")) {
+            nodeA.start(message -> { });
+            nodeB.start(received::add);
+            nodeA.publish(new BreakerStateMessage("node-a", 43, "payment-service", CircuitBreaker.State.OPEN,
+                    System.currentTimeMillis(), 7, 12));
+            assertThat(received.poll(500, TimeUnit.MILLISECONDS)).isNull();
+        }
+        assertThatThrownBy(() -> new UdpClusterTransport("127.0.0.1", 0, List.of(), ""))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static int freeUdpPort() throws SocketException {
+        try (DatagramSocket socket = new DatagramSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.circuitbreaker.circuit_breaker_patterns;
+
+import com.circuitbreaker.circuit_breaker_patterns.config.CircuitBrakerProperties;
+import com.circuitbreaker.circuit_breaker_patterns.enums.*;
+import com.circuitbreaker.circuit_breaker_patterns.service.impl.*;
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class GuardedCallExecutorTests {
+
+    private GuardedCallExecutor executor;
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void virtualModeRunsOperationsOnVirtualThreads() throws Exception {
+        executor = new GuardedCallExecutor(properties(ExecutorMode.VIRTUAL));
+        assertThat(executor.submit("probe", 0, () -> Thread.currentThread().isVirtual()).get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(executor.submit("probe", 2, () -> Thread.currentThread().isVirtual()).get(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void platformModeRunsOperationsOnPlatformThreads() throws Exception {
+        executor = new GuardedCallExecutor(properties(ExecutorMode.PLATFORM));
+        assertThat(executor.submit("probe", 0, () -> Thread.currentThread().isVirtual()).get(5, TimeUnit.SECONDS)).isFalse();
+    }
+
+    @Test
+    void operationsBeyondTheServiceCapWaitForAFreeSlot() throws Exception {
+        executor = new GuardedCallExecutor(properties(ExecutorMode.VIRTUAL));
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch capReached = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> calls = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            calls.add(executor.submit("capped", 2, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                capReached.countDown();
+                await(release);
+                running.decrementAndGet();
+                return "done";
+            }));
+        }
+        assertThat(capReached.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(100);
+        // The other three are queued, not rejected
+        assertThat(running.get()).isEqualTo(2);
+        assertThat(calls).filteredOn(call -> !call.isDone()).hasSize(5);
+
+        // Another service has a cap of its own
+        assertThat(executor.submit("other", 2, () -> "free").get(5, TimeUnit.SECONDS)).isEqualTo("free");
+
+        release.countDown();
+        for (Future<String> call : calls) {
+            assertThat(call.get(5, TimeUnit.SECONDS)).isEqualTo("done");
+        }
+        assertThat(maxRunning.get()).isEqualTo(2);
+    }
+
+    private static CircuitBrakerProperties properties(ExecutorMode mode) {
+        CircuitBrakerProperties properties = new CircuitBrakerProperties();
+        properties.getExecutor().setMode(mode);
+        return properties;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
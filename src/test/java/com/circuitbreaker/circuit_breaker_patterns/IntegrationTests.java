@@ -1,14 +1,34 @@
 package com.circuitbreaker.circuit_breaker_patterns;
 
+import com.circuitbreaker.circuit_breaker_patterns.config.CircuitBrakerProperties;
+import com.circuitbreaker.circuit_breaker_patterns.dto.*;
+import com.circuitbreaker.circuit_breaker_patterns.enums.*;
+import com.circuitbreaker.circuit_breaker_patterns.exception.*;
+import com.fasterxml.jackson.databind.*;
+import com.circuitbreaker.circuit_breaker_patterns.service.*;
+import com.circuitbreaker.circuit_breaker_patterns.service.impl.*;
+import io.github.resilience4j.circuitbreaker.*;
+import io.micrometer.core.instrument.*;
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
 import org.springframework.beans.factory.annotation.*;
 import org.springframework.boot.test.context.*;
 import org.springframework.boot.test.web.client.*;
 import org.springframework.http.*;
+import org.springframework.web.reactive.function.client.*;
+import reactor.core.publisher.*;
+import reactor.netty.resources.*;
 
+import java.io.*;
+import java.nio.file.*;
+import java.time.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.stream.*;
 
 import static org.assertj.core.api.Assertions.*;
+import static org.assertj.core.api.InstanceOfAssertFactories.*;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 public class IntegrationTests {
@@ -16,6 +36,36 @@ public class IntegrationTests {
     @Autowired
     private TestRestTemplate restTemplate;
 
+    @Autowired
+    private AdaptiveThresholdTuner adaptiveThresholdTuner;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @Autowired
+    private CircuitBreakerServiceImpl circuitBreakerService;
+
+    @Autowired
+    private CircuitBrakerProperties circuitBrakerProperties;
+
+    @Autowired
+    private RequestHedger requestHedger;
+
+    @Autowired
+    private ConnectionProvider userServiceConnectionProvider;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserStore userStore;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private WebClient webClient;
+
     @Test
     void userCreateAndGet() {
         Map<String, Object> newUser = Map.of(
@@ -37,6 +87,178 @@ public class IntegrationTests {
         assertThat(getBody.get("email")).isEqualTo("inttester@example.com");
     }
 
+    @Test
+    void usersCanBeUpdatedLookedUpByEmailAndDeleted() {
+        Map<String, Object> created = restTemplate.postForObject("/api/users",
+                Map.of("name", "Crud Tester", "email", "crud@example.com"), Map.class);
+        String id = String.valueOf(created.get("id"));
+
+        assertThat(restTemplate.getForObject("/api/users?email=CRUD@example.com", Map.class)).containsEntry("name", "Crud Tester");
+        ResponseEntity<Map> duplicate = restTemplate.postForEntity("/api/users",
+                Map.of("name", "Someone Else", "email", "Crud@Example.com"), Map.class);
+        assertThat(duplicate.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+
+        ResponseEntity<Map> updated = restTemplate.exchange("/api/users/" + id, HttpMethod.PUT,
+                new HttpEntity<>(Map.of("name", "Crud Renamed", "email", "crud-renamed@example.com")), Map.class);
+        assertThat(updated.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(updated.getBody()).containsEntry("name", "Crud Renamed").containsEntry("createdAt", created.get("createdAt"));
+        assertThat(restTemplate.getForEntity("/api/users?email=crud@example.com", Map.class).getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+
+        assertThat(restTemplate.exchange("/api/users/" + id, HttpMethod.DELETE, null, Void.class).getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+        assertThat(restTemplate.getForEntity("/api/users/" + id, Map.class).getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(restTemplate.getForEntity("/api/users?email=crud-renamed@example.com", Map.class).getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+
+        // Enough users to grow the stripes several times; removals must keep every remaining probe chain intact
+        List<UserResponse> users = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            users.add(userStore.create("Bulk " + i, "bulk-" + i + "@example.com"));
+        }
+        for (int i = 0; i < users.size(); i += 2) {
+            assertThat(userStore.delete(users.get(i).id())).isEqualTo(users.get(i));
+        }
+        for (int i = 0; i < users.size(); i++) {
+            UserResponse expected = i % 2 == 0 ? null : users.get(i);
+            assertThat(userStore.get(users.get(i).id())).isEqualTo(expected);
+            assertThat(userStore.findByEmail("bulk-" + i + "@example.com")).isEqualTo(expected);
+        }
+        for (int i = 1; i < users.size(); i += 2) {
+            userStore.delete(users.get(i).id());
+        }
+    }
+
+    @Test
+    void usersSurviveARestartFromSnapshotAndWriteAheadLog(@TempDir Path directory) throws IOException {
+        UserJournal journal = new UserJournal(true, directory.toString(), false);
+        UserStore store = new UserStore(journal);
+        store.recover();
+        UserResponse kept = store.create("Kept", "kept@example.com");
+        UserResponse renamed = store.create("Renamed", "renamed@example.com");
+        UserResponse deleted = store.create("Deleted", "deleted@example.com");
+        store.snapshot();
+        // After the snapshot: only in the write-ahead log
+        renamed = store.update(renamed.id(), "Renamed Again", "renamed-again@example.com");
+        store.delete(deleted.id());
+        UserResponse late = store.create("Late", "late@example.com");
+        // A crash in the middle of an append leaves a torn record at the end of the log
+        try (Stream<Path> files = Files.list(directory)) {
+            Path wal = files.filter(file -> file.toString().endsWith(".wal")).max(Comparator.naturalOrder()).orElseThrow();
+            Files.write(wal, new byte[]{0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+        }
+        // Crash: the files are released without the snapshot a regular shutdown writes
+        journal.close();
+
+        UserStore restarted = new UserStore(new UserJournal(true, directory.toString(), false));
+        restarted.recover();
+        try {
+            assertThat(restarted.size()).isEqualTo(3);
+            assertThat(restarted.get(kept.id())).isEqualTo(kept);
+            assertThat(restarted.get(renamed.id())).isEqualTo(renamed);
+            assertThat(restarted.get(deleted.id())).isNull();
+            assertThat(restarted.findByEmail("renamed-again@example.com")).isEqualTo(renamed);
+            assertThat(restarted.findByEmail("renamed@example.com")).isNull();
+            assertThat(restarted.get(late.id())).isEqualTo(late);
+            assertThat(restarted.create("New", "new@example.com").id()).isGreaterThan(late.id());
+        } finally {
+            restarted.close();
+        }
+    }
+
+    @Test
+    void aChangeTheJournalRefusesIsNotMade() {
+        UserJournal failingJournal = new UserJournal(false, "unused", false) {
+            @Override
+            public synchronized void logPut(UserResponse user) {
+                if (user.email().startsWith("refused")) {
+                    throw new UserStorePersistenceException("disk full", null);
+                }
+            }
+        };
+        UserStore store = new UserStore(failingJournal);
+        UserResponse existing = store.create("Existing", "existing@example.com");
+
+        assertThatThrownBy(() -> store.create("Refused", "refused@example.com"))
+                .isInstanceOf(UserStorePersistenceException.class);
+        assertThatThrownBy(() -> store.update(existing.id(), "Existing", "refused-too@example.com"))
+                .isInstanceOf(UserStorePersistenceException.class);
+
+        assertThat(store.size()).isEqualTo(1);
+        assertThat(store.findByEmail("refused@example.com")).isNull();
+        assertThat(store.findByEmail("refused-too@example.com")).isNull();
+        assertThat(store.get(existing.id())).isEqualTo(existing);
+        assertThat(store.findByEmail("existing@example.com")).isEqualTo(existing);
+        // The emails were released again
+        assertThat(store.create("Other", "other@example.com")).isNotNull();
+        assertThat(store.update(existing.id(), "Existing", "other-too@example.com").email()).isEqualTo("other-too@example.com");
+    }
+
+    @Test
+    void externalBatchMarksUnavailableUsersInsteadOfFailing() {
+        circuitBreakerService.forceCircuitBreakerState(ServiceType.USER_SERVICE, "OPEN");
+        try {
+            ResponseEntity<Map> resp = restTemplate.postForEntity("/api/users/external/batch",
+                    List.of("batch-1", "batch-2", "batch-1"), Map.class);
+            assertThat(resp.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(resp.getBody()).containsEntry("total", 2).containsEntry("counts", Map.of("fallback", 2));
+            List<Map<String, Object>> users = (List<Map<String, Object>>) resp.getBody().get("users");
+            assertThat(users).extracting(user -> user.get("id")).containsExactly("batch-1", "batch-2");
+        } finally {
+            circuitBreakerService.resetCircuitBreaker(ServiceType.USER_SERVICE);
+        }
+
+        List<String> tooMany = Collections.nCopies(501, "1");
+        assertThat(restTemplate.postForEntity("/api/users/external/batch", tooMany, Map.class).getStatusCode())
+                .isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    void aFailingIdInABatchFallsBackOnItsOwn() {
+        // Fails before the breaker and its fallback are reached
+        ExternalUserCache failingCache = new ExternalUserCache(100, Duration.ofSeconds(60), Duration.ofMinutes(10)) {
+            @Override
+            public ExternalUserDto getFresh(String userId) {
+                if (userId.startsWith("broken")) {
+                    throw new IllegalStateException("cache unavailable");
+                }
+                return super.getFresh(userId);
+            }
+        };
+        UserService batchService = new UserService(circuitBreakerService, webClient, failingCache, requestHedger, userStore, 500, 4);
+        circuitBreakerService.forceCircuitBreakerState(ServiceType.USER_SERVICE, "OPEN");
+        try {
+            ExternalUserBatchResponse batch = batchService.getUsersByIds(List.of("mixed-1", "broken-1", "mixed-2"))
+                    .block(Duration.ofSeconds(5));
+            assertThat(batch.users()).extracting(ExternalUserDto::id).containsExactly("mixed-1", "broken-1", "mixed-2");
+            assertThat(batch.users()).allSatisfy(user -> assertThat(user.fallback()).isTrue());
+
+            List<ExternalUserDto> streamed = batchService.streamUsersByIds(List.of("broken-2", "mixed-3"))
+                    .collectList().block(Duration.ofSeconds(5));
+            assertThat(streamed).extracting(ExternalUserDto::id).containsExactlyInAnyOrder("broken-2", "mixed-3");
+        } finally {
+            circuitBreakerService.resetCircuitBreaker(ServiceType.USER_SERVICE);
+        }
+    }
+
+    @Test
+    void unknownUserIsNotFound() {
+        ResponseEntity<Map> resp = restTemplate.getForEntity("/api/users/does-not-exist", Map.class);
+        assertThat(resp.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(resp.getBody()).containsEntry("status", 404);
+    }
+
+    @Test
+    void externalUserPayloadBindsToTypedRecords() throws Exception {
+        ExternalUserResponse response = objectMapper.readValue("""
+                {"id": 7, "name": "Kurtis Weissnat", "username": "Elwyn.Skiles", "email": "Telly.Hoeger@billy.biz",
+                 "address": {"street": "Rex Trail", "geo": {"lat": "24.8918", "lng": "21.8984"}},
+                 "company": {"name": "Johns Group"}}
+                """, ExternalUserResponse.class);
+        assertThat(response).isEqualTo(new ExternalUserResponse("7", "Kurtis Weissnat", "Telly.Hoeger@billy.biz"));
+
+        Map<String, Object> json = objectMapper.convertValue(ExternalUserDto.fromUpstream("7", response), Map.class);
+        assertThat(json).containsEntry("service", "external-api").containsEntry("success", true)
+                .doesNotContainKeys("fallback", "stale", "error");
+    }
+
     @Test
     void paymentProcess() {
         Map<String, Object> payment = Map.of(
@@ -51,6 +273,90 @@ public class IntegrationTests {
         assertThat(body).containsKey("status");
     }
 
+    @Test
+    void queuedPaymentKeepsTheIdempotencyKeyItWasAnsweredWith(@TempDir Path dir) {
+        FallbackOutbox outbox = new FallbackOutbox(objectMapper, dir.resolve("outbox.dat").toString(), 4096,
+                dir.resolve("dead-letter.jsonl").toString());
+        outbox.open();
+        PaymentService paymentService = new PaymentService(circuitBreakerService, outbox);
+        circuitBreakerService.forceCircuitBreakerState(ServiceType.PAYMENT_SERVICE, "OPEN");
+        try {
+            Map<String, Object> pending = paymentService.processPayment(Map.of("amount", 12.5));
+            assertThat(pending).containsEntry("status", "pending");
+            // The replay charges under the id the client was given, so a payment that went through before its
+            // timeout is not charged again
+            assertThat(outbox.peek(1)).singleElement()
+                    .satisfies(entry -> assertThat(entry.payload()).containsEntry("idempotencyKey", pending.get("transactionId")));
+
+            Map<String, Object> clientKeyed = paymentService.processPayment(Map.of("amount", 12.5, "idempotencyKey", "order-77"));
+            assertThat(clientKeyed).containsEntry("transactionId", "order-77");
+        } finally {
+            circuitBreakerService.resetCircuitBreaker(ServiceType.PAYMENT_SERVICE);
+            outbox.close();
+        }
+    }
+
+    @Test
+    void undeliverableOutboxEntriesMoveToTheDeadLetters(@TempDir Path dir) throws IOException {
+        Path deadLetters = dir.resolve("dead-letter.jsonl");
+        FallbackOutbox outbox = new FallbackOutbox(objectMapper, dir.resolve("outbox.dat").toString(), 4096, deadLetters.toString());
+        outbox.open();
+        try {
+            outbox.append(OutboxEntryType.PAYMENT, Map.of("amount", 5, "idempotencyKey", "txn-dead"));
+            outbox.append(OutboxEntryType.SMS, Map.of("to", "+15550100"));
+            assertThat(outbox.deadLetter(outbox.peek(1).get(0), "declined")).isTrue();
+
+            assertThat(outbox.peek(10)).extracting(FallbackOutbox.Entry::type).containsExactly(OutboxEntryType.SMS);
+            Map<String, Object> deadLetter = objectMapper.readValue(Files.readAllLines(deadLetters).get(0), Map.class);
+            assertThat(deadLetter).containsEntry("type", "PAYMENT").containsEntry("reason", "declined");
+            assertThat((Map<String, Object>) deadLetter.get("payload")).containsEntry("idempotencyKey", "txn-dead");
+        } finally {
+            outbox.close();
+        }
+    }
+
+    @Test
+    void corruptOutboxRecordsAreQuarantinedInsteadOfBlockingTheQueue(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("outbox.dat");
+        Path deadLetters = dir.resolve("dead-letter.jsonl");
+        FallbackOutbox outbox = new FallbackOutbox(objectMapper, file.toString(), 4096, deadLetters.toString());
+        outbox.open();
+        outbox.append(OutboxEntryType.SMS, Map.of("to", "+15550100"));
+        outbox.append(OutboxEntryType.SMS, Map.of("to", "+15550101"));
+        outbox.close();
+        // An unknown type code in the first record (header 16 bytes, then the record's int length)
+        try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+            raw.seek(20);
+            raw.writeByte(99);
+        }
+
+        outbox = new FallbackOutbox(objectMapper, file.toString(), 4096, deadLetters.toString());
+        outbox.open();
+        try {
+            assertThat(outbox.peek(10)).singleElement()
+                    .satisfies(entry -> assertThat(entry.payload()).containsEntry("to", "+15550101"));
+            assertThat(Files.readAllLines(deadLetters)).singleElement().asString().contains("Unknown entry type code 99");
+
+            // A length running past the written records: the entries before it are still delivered, then the rest
+            // of the queue is quarantined
+            outbox.append(OutboxEntryType.SMS, Map.of("to", "+15550102"));
+            outbox.append(OutboxEntryType.SMS, Map.of("to", "+15550103"));
+            List<FallbackOutbox.Entry> entries = outbox.peek(10);
+            try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+                raw.seek(entries.get(1).endOffset());
+                raw.writeInt(Integer.MAX_VALUE);
+            }
+            entries = outbox.peek(10);
+            assertThat(entries).extracting(entry -> entry.payload().get("to")).containsExactly("+15550101", "+15550102");
+            outbox.acknowledge(entries.get(1));
+            assertThat(outbox.peek(10)).isEmpty();
+            assertThat(outbox.pendingBytes()).isZero();
+            assertThat(Files.readAllLines(deadLetters)).hasSize(2);
+        } finally {
+            outbox.close();
+        }
+    }
+
     @Test
     void notificationEmail() {
         Map<String, Object> email = Map.of(
@@ -65,5 +371,422 @@ public class IntegrationTests {
         assertThat(body).containsKey("messageId");
         assertThat(body).containsKey("status");
     }
-}
 
+    @Test
+    void reactiveExternalUserFallsBackWhenCircuitOpen() {
+        restTemplate.postForEntity("/api/circuit-breaker/USER_SERVICE/force/OPEN", null, Map.class);
+        try {
+            ResponseEntity<Map> resp = restTemplate.getForEntity("/api/users/external/reactive/1", Map.class);
+            assertThat(resp.getStatusCode()).isEqualTo(HttpStatus.OK);
+            Map body = resp.getBody();
+            assertThat(body).isNotNull();
+            assertThat(body.get("fallback")).isEqualTo(true);
+            assertThat(body.get("id")).isEqualTo("1");
+        } finally {
+            restTemplate.postForEntity("/api/circuit-breaker/USER_SERVICE/reset", null, Map.class);
+        }
+    }
+
+    @Test
+    void bulkheadMetricsExposed() {
+        Map<String, Object> email = Map.of("to", "user@example.com", "subject", "Bulkhead", "body", "Hello");
+        restTemplate.postForEntity("/api/notifications/email", email, Map.class);
+
+        ResponseEntity<Map> resp = restTemplate.getForEntity(
+                "/actuator/metrics/resilience4j.bulkhead.available.concurrent.calls?tag=name:notification-service", Map.class);
+        assertThat(resp.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(resp.getBody()).containsKey("measurements");
+    }
+
+    @Test
+    void guardedCallMetricsTaggedByCallerAndOutcome() {
+        restTemplate.postForEntity("/api/circuit-breaker/PAYMENT_SERVICE/force/OPEN", null, Map.class);
+        try {
+            restTemplate.postForEntity("/api/payments", Map.of("amount", 10, "currency", "USD"), Map.class);
+        } finally {
+            restTemplate.postForEntity("/api/circuit-breaker/PAYMENT_SERVICE/reset", null, Map.class);
+        }
+
+        ResponseEntity<Map> resp = restTemplate.getForEntity(
+                "/actuator/metrics/circuit.breaker.calls?tag=service:payment-service&tag=caller:processPayment&tag=outcome:not_permitted&tag=fallback:true",
+                Map.class);
+        assertThat(resp.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(resp.getBody()).containsKey("measurements");
+
+        ResponseEntity<Map> percentile = restTemplate.getForEntity(
+                "/actuator/metrics/circuit.breaker.calls.percentile?tag=caller:processPayment&tag=phi:0.999", Map.class);
+        assertThat(percentile.getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    void adaptiveTuningKeepsPaymentThresholdsInBounds() {
+        restTemplate.postForEntity("/api/circuit-breaker/PAYMENT_SERVICE/reset", null, Map.class);
+        adaptiveThresholdTuner.tune();
+        restTemplate.postForEntity("/api/payments", Map.of("amount", 10, "currency", "USD"), Map.class);
+        adaptiveThresholdTuner.tune();
+
+        CircuitBreakerConfig config = circuitBreakerRegistry.circuitBreaker("payment-service").getCircuitBreakerConfig();
+        assertThat(config.getSlidingWindowSize()).isBetween(10, 200);
+        assertThat(config.getMinimumNumberOfCalls()).isLessThanOrEqualTo(config.getSlidingWindowSize());
+        assertThat(config.getFailureRateThreshold()).isBetween(40f, 70f);
+    }
+
+    @Test
+    void stateEndpointExposesWindowAndSlowCallConfig() {
+        ResponseEntity<Map> resp = restTemplate.getForEntity("/api/circuit-breaker/USER_SERVICE/state", Map.class);
+        assertThat(resp.getStatusCode()).isEqualTo(HttpStatus.OK);
+        Map body = resp.getBody();
+        assertThat(body).isNotNull();
+        assertThat(body).containsKeys("state", "metrics");
+        Map config = (Map) body.get("config");
+        assertThat(config.get("slidingWindowType")).isEqualTo("TIME_BASED");
+        assertThat(config.get("slidingWindowSize")).isEqualTo(30);
+        assertThat(config.get("slowCallDurationThreshold")).isEqualTo("PT1.5S");
+        assertThat(config.get("slowCallRateThreshold")).isEqualTo(60.0);
+
+        ResponseEntity<Map> all = restTemplate.getForEntity("/api/circuit-breaker/states?details=true", Map.class);
+        assertThat(all.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat((Map) all.getBody().get("PAYMENT_SERVICE")).containsKeys("state", "config", "metrics");
+        ResponseEntity<Map> byName = restTemplate.getForEntity("/api/circuit-breaker/v2/states?details=true", Map.class);
+        assertThat((Map) byName.getBody().get("payment-service")).containsKeys("state", "config", "metrics");
+    }
+
+    @Test
+    void configReloadAppliesOverrideFile() throws Exception {
+        Path override = Path.of("config/circuit-breaker-override.yml");
+        Files.createDirectories(override.getParent());
+        Files.writeString(override, """
+                circuit-breaker:
+                  services:
+                    notification-service:
+                      failure-rate-threshold: 65
+                      timeout-duration: 3s
+                """);
+        try {
+            ResponseEntity<Map> resp = restTemplate.postForEntity("/api/circuit-breaker/config/reload", null, Map.class);
+            assertThat(resp.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+            Map body = restTemplate.getForEntity("/api/circuit-breaker/NOTIFICATION_SERVICE/state", Map.class).getBody();
+            assertThat(body).isNotNull();
+            assertThat(((Map) body.get("config")).get("failureRateThreshold")).isEqualTo(65.0);
+        } finally {
+            Files.deleteIfExists(override);
+            restTemplate.postForEntity("/api/circuit-breaker/config/reload", null, Map.class);
+        }
+        Map restored = restTemplate.getForEntity("/api/circuit-breaker/NOTIFICATION_SERVICE/state", Map.class).getBody();
+        assertThat(((Map) restored.get("config")).get("failureRateThreshold")).isEqualTo(60.0);
+    }
+
+    @Test
+    void dynamicServicesAreCreatedOnDemandAndEvictedWhenIdle() throws Exception {
+        CircuitBrakerProperties.ServiceConfig family = new CircuitBrakerProperties.ServiceConfig();
+        family.setFailureRateThreshold(35);
+        family.setTimeoutDuration(Duration.ofMillis(100));
+        circuitBrakerProperties.getServices().put("tenant-probe", family);
+        Duration idleTimeout = circuitBrakerProperties.getRegistry().getIdleTimeout();
+        String serviceName = "tenant-probe:42";
+        try {
+            assertThat(circuitBreakerService.executeWithCircuitBreaker(serviceName, "test", () -> "ok")).isEqualTo("ok");
+            assertThat(circuitBreakerService.getCircuitBreakerConfig(serviceName).getFailureRateThreshold()).isEqualTo(35f);
+            circuitBreakerService.getCircuitBreakerState("user-service");
+
+            ResponseEntity<Map> state = restTemplate.getForEntity("/api/circuit-breaker/" + serviceName + "/state", Map.class);
+            assertThat(state.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(restTemplate.getForEntity("/api/circuit-breaker/v2/states", Map.class).getBody()).containsKeys(serviceName, "user-service");
+            // The original endpoint keeps its keys
+            assertThat(restTemplate.getForEntity("/api/circuit-breaker/states", Map.class).getBody())
+                    .containsOnlyKeys("USER_SERVICE", "PAYMENT_SERVICE", "NOTIFICATION_SERVICE");
+            assertThat(restTemplate.getForEntity("/api/circuit-breaker/tenant-probe:7/state", Map.class).getStatusCode())
+                    .isEqualTo(HttpStatus.NOT_FOUND);
+
+            // Last use is tracked with one second resolution, calls may not have started within the timeout
+            circuitBrakerProperties.getRegistry().setIdleTimeout(Duration.ZERO);
+            Thread.sleep(1300);
+            circuitBreakerService.evictIdleServices();
+            assertThat(circuitBreakerService.isRegistered(serviceName)).isFalse();
+            assertThat(circuitBreakerRegistry.find(serviceName)).isEmpty();
+            assertThat(circuitBreakerService.isRegistered("user-service")).isTrue();
+        } finally {
+            circuitBrakerProperties.getRegistry().setIdleTimeout(idleTimeout);
+            circuitBrakerProperties.getServices().remove("tenant-probe");
+        }
+    }
+
+    @Test
+    void transientFailuresAreRetriedWithinTheBreaker() {
+        CircuitBrakerProperties.ServiceConfig family = new CircuitBrakerProperties.ServiceConfig();
+        family.getRetry().setMaxAttempts(3);
+        family.getRetry().setInitialBackoff(Duration.ofMillis(1));
+        circuitBrakerProperties.getServices().put("retry-probe", family);
+        try {
+            AtomicInteger attempts = new AtomicInteger();
+            String result = circuitBreakerService.executeWithCircuitBreaker("retry-probe:transient", "test", () -> {
+                if (attempts.incrementAndGet() < 3) {
+                    throw new UncheckedIOException(new IOException("connection reset"));
+                }
+                return "ok";
+            }, () -> "fallback");
+            assertThat(result).isEqualTo("ok");
+            assertThat(attempts.get()).isEqualTo(3);
+            assertThat(circuitBreakerService.getCircuitBreakerDetails("retry-probe:transient"))
+                    .extractingByKey("metrics", as(MAP)).containsEntry("bufferedCalls", 1);
+
+            // Not a transport failure: straight to the fallback
+            AtomicInteger rejected = new AtomicInteger();
+            String fallback = circuitBreakerService.executeWithCircuitBreaker("retry-probe:permanent", "test", () -> {
+                rejected.incrementAndGet();
+                throw new IllegalStateException("declined");
+            }, () -> "fallback");
+            assertThat(fallback).isEqualTo("fallback");
+            assertThat(rejected.get()).isEqualTo(1);
+        } finally {
+            circuitBrakerProperties.getServices().remove("retry-probe");
+        }
+    }
+
+    @Test
+    void anErrorThrownByAHalfOpenProbeReturnsItsPermission() {
+        CircuitBrakerProperties.ServiceConfig config = new CircuitBrakerProperties.ServiceConfig();
+        config.setPermittedNumberOfCallsInHalfOpenState(1);
+        circuitBrakerProperties.getServices().put("error-probe", config);
+        try {
+            circuitBreakerService.getCircuitBreakerState("error-probe");
+            CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker("error-probe");
+            circuitBreaker.transitionToOpenState();
+            circuitBreaker.transitionToHalfOpenState();
+
+            assertThatThrownBy(() -> circuitBreakerService.executeWithCircuitBreaker("error-probe", "test",
+                    () -> { throw new AssertionError("broken supplier"); }, () -> "fallback"))
+                    .isInstanceOf(AssertionError.class);
+            // The only probe permission is free again: the next call probes and closes the breaker
+            assertThat(circuitBreakerService.executeWithCircuitBreaker("error-probe", "test", () -> "ok", () -> "fallback"))
+                    .isEqualTo("ok");
+            assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        } finally {
+            circuitBrakerProperties.getServices().remove("error-probe");
+        }
+    }
+
+    @Test
+    void aCallSlowerThanTheTimeoutIsCutOffAndRecordedAsAFailure() {
+        CircuitBrakerProperties.ServiceConfig config = new CircuitBrakerProperties.ServiceConfig();
+        config.setTimeoutDuration(Duration.ofMillis(100));
+        circuitBrakerProperties.getServices().put("timeout-probe", config);
+        try {
+            long start = System.nanoTime();
+            String result = circuitBreakerService.executeWithCircuitBreaker("timeout-probe", "test", () -> {
+                try {
+                    Thread.sleep(5_000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "late";
+            }, () -> "fallback");
+
+            assertThat(result).isEqualTo("fallback");
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+            assertThat(circuitBreakerService.getCircuitBreakerDetails("timeout-probe"))
+                    .extractingByKey("metrics", as(MAP))
+                    .containsEntry("bufferedCalls", 1)
+                    .containsEntry("failedCalls", 1);
+        } finally {
+            circuitBrakerProperties.getServices().remove("timeout-probe");
+        }
+    }
+
+    @Test
+    void timedOutCallsOnAThreadPoolBulkheadAreInterrupted() throws Exception {
+        CircuitBrakerProperties.ServiceConfig config = new CircuitBrakerProperties.ServiceConfig();
+        config.setTimeoutDuration(Duration.ofMillis(100));
+        config.getBulkhead().setType(BulkheadType.THREADPOOL);
+        config.getBulkhead().setCoreThreadPoolSize(1);
+        config.getBulkhead().setMaxThreadPoolSize(1);
+        circuitBrakerProperties.getServices().put("interrupt-probe", config);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        try {
+            String result = circuitBreakerService.executeWithCircuitBreaker("interrupt-probe", "test", () -> {
+                try {
+                    Thread.sleep(10_000);
+                    return "late";
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw new IllegalStateException(e);
+                }
+            }, () -> "fallback");
+            assertThat(result).isEqualTo("fallback");
+            assertThat(interrupted.await(2, TimeUnit.SECONDS)).isTrue();
+            // The single pool thread is free again
+            assertThat(circuitBreakerService.executeWithCircuitBreaker("interrupt-probe", "test", () -> "ok", () -> "fallback"))
+                    .isEqualTo("ok");
+        } finally {
+            circuitBrakerProperties.getServices().remove("interrupt-probe");
+        }
+    }
+
+    @Test
+    void slowAttemptIsHedgedAndTheLoserCancelled() {
+        CircuitBrakerProperties.ServiceConfig config = new CircuitBrakerProperties.ServiceConfig();
+        config.getHedging().setEnabled(true);
+        config.getHedging().setMaxDelay(Duration.ofMillis(50));
+        config.getHedging().setMaxHedgeRatio(1.0);
+        circuitBrakerProperties.getServices().put("hedge-probe", config);
+        try {
+            circuitBreakerService.getCircuitBreakerState("hedge-probe");
+            AtomicInteger attempts = new AtomicInteger();
+            AtomicBoolean primaryCancelled = new AtomicBoolean();
+            Mono<String> attempt = Mono.defer(() -> attempts.incrementAndGet() == 1
+                    ? Mono.<String>never().doOnCancel(() -> primaryCancelled.set(true))
+                    : Mono.just("hedged"));
+
+            assertThat(requestHedger.hedge("hedge-probe", attempt).block(Duration.ofSeconds(2))).isEqualTo("hedged");
+            assertThat(attempts.get()).isEqualTo(2);
+            assertThat(primaryCancelled.get()).isTrue();
+            // The hedge went through the breaker as a call of its own
+            assertThat(circuitBreakerService.getCircuitBreakerDetails("hedge-probe"))
+                    .extractingByKey("metrics", as(MAP)).containsEntry("bufferedCalls", 1);
+            // The cancelled primary is timed too, with the time it ran
+            assertThat(meterRegistry.get(RequestHedger.ATTEMPT_LATENCY_METRIC).tag("service", "hedge-probe").timer().count())
+                    .isEqualTo(2);
+            assertThat(meterRegistry.get(RequestHedger.HEDGES_METRIC).tags("service", "hedge-probe", "result", "launched")
+                    .counter().count()).isEqualTo(1);
+        } finally {
+            circuitBrakerProperties.getServices().remove("hedge-probe");
+        }
+    }
+
+    @Test
+    void callsBeyondTheConcurrencyLimitGoToTheFallback() throws Exception {
+        CircuitBrakerProperties.ServiceConfig config = new CircuitBrakerProperties.ServiceConfig();
+        config.getConcurrencyLimit().setEnabled(true);
+        config.getConcurrencyLimit().setInitialLimit(2);
+        config.getConcurrencyLimit().setMinLimit(1);
+        config.getConcurrencyLimit().setMaxLimit(2);
+        circuitBrakerProperties.getServices().put("limit-probe", config);
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<String>> slow = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                slow.add(callers.submit(() -> circuitBreakerService.executeWithCircuitBreaker("limit-probe", "test", () -> {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "ok";
+                }, () -> "fallback")));
+            }
+            assertThat(started.await(2, TimeUnit.SECONDS)).isTrue();
+            assertThat(circuitBreakerService.getCircuitBreakerDetails("limit-probe"))
+                    .extractingByKey("concurrencyLimit", as(MAP)).containsEntry("inFlight", 2);
+
+            // Both permits taken: the third call does not queue behind them
+            assertThat(circuitBreakerService.executeWithCircuitBreaker("limit-probe", "test", () -> "ok", () -> "limited")).isEqualTo("limited");
+            release.countDown();
+            for (Future<String> call : slow) {
+                assertThat(call.get(2, TimeUnit.SECONDS)).isEqualTo("ok");
+            }
+            assertThat(circuitBreakerService.executeWithCircuitBreaker("limit-probe", "test", () -> "ok", () -> "limited")).isEqualTo("ok");
+        } finally {
+            release.countDown();
+            circuitBrakerProperties.getServices().remove("limit-probe");
+        }
+    }
+
+    @Test
+    void userServiceWebClientUsesConfiguredPool() {
+        assertThat(userServiceConnectionProvider.name()).isEqualTo("user-service");
+        assertThat(userServiceConnectionProvider.maxConnections()).isEqualTo(50);
+    }
+
+    @Test
+    void notificationEmailBatch() {
+        List<Map<String, Object>> emails = List.of(
+                Map.of("to", "a@example.com", "subject", "Batch", "body", "Hello"),
+                Map.of("to", "b@example.com", "subject", "Batch", "body", "Hello"),
+                Map.of("to", "c@example.com", "subject", "Batch", "body", "Hello")
+        );
+        ResponseEntity<Map> resp = restTemplate.postForEntity("/api/notifications/email/batch", emails, Map.class);
+        assertThat(resp.getStatusCode()).isEqualTo(HttpStatus.OK);
+        Map body = resp.getBody();
+        assertThat(body).isNotNull();
+        assertThat(body.get("total")).isEqualTo(3);
+        assertThat((List) body.get("results")).hasSize(3);
+    }
+
+    @Test
+    void batchesStreamOneItemPerLineWhenNdjsonIsAccepted() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(List.of(MediaType.APPLICATION_NDJSON));
+        List<Map<String, Object>> emails = List.of(
+                Map.of("to", "a@example.com", "subject", "Stream", "body", "Hello"),
+                Map.of("to", "b@example.com", "subject", "Stream", "body", "Hello"));
+        ResponseEntity<String> notifications = restTemplate.exchange("/api/notifications/email/batch", HttpMethod.POST,
+                new HttpEntity<>(emails, headers), String.class);
+        assertThat(notifications.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_NDJSON);
+        List<Map> sent = new ArrayList<>();
+        for (String line : notifications.getBody().split("\n")) {
+            sent.add(objectMapper.readValue(line, Map.class));
+        }
+        // Completion order: the index says which message each result belongs to
+        assertThat(sent).extracting(result -> result.get("index")).containsExactlyInAnyOrder(0, 1);
+
+        circuitBreakerService.forceCircuitBreakerState(ServiceType.USER_SERVICE, "OPEN");
+        try {
+            ResponseEntity<String> users = restTemplate.exchange("/api/users/external/batch", HttpMethod.POST,
+                    new HttpEntity<>(List.of("stream-1", "stream-2", "stream-1"), headers), String.class);
+            assertThat(users.getStatusCode()).isEqualTo(HttpStatus.OK);
+            List<String> ids = new ArrayList<>();
+            for (String line : users.getBody().split("\n")) {
+                ids.add(objectMapper.readTree(line).get("id").asText());
+            }
+            assertThat(ids).containsExactlyInAnyOrder("stream-1", "stream-2");
+        } finally {
+            circuitBreakerService.resetCircuitBreaker(ServiceType.USER_SERVICE);
+        }
+    }
+
+    @Test
+    void notificationFallbackIsQueuedInOutbox() {
+        restTemplate.postForEntity("/api/circuit-breaker/NOTIFICATION_SERVICE/force/OPEN", null, Map.class);
+        try {
+            Map<String, Object> sms = Map.of("to", "+15550100", "body", "Hello");
+            ResponseEntity<Map> resp = restTemplate.postForEntity("/api/notifications/sms", sms, Map.class);
+            assertThat(resp.getStatusCode()).isEqualTo(HttpStatus.OK);
+            Map body = resp.getBody();
+            assertThat(body).isNotNull();
+            assertThat(body.get("status")).isEqualTo("queued");
+            assertThat(body).containsKey("persisted");
+        } finally {
+            restTemplate.postForEntity("/api/circuit-breaker/NOTIFICATION_SERVICE/reset", null, Map.class);
+        }
+    }
+
+    @Test
+    void externalUserCacheStats() {
+        ResponseEntity<Map> resp = restTemplate.getForEntity("/api/users/external/cache/stats", Map.class);
+        assertThat(resp.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(resp.getBody()).containsKeys("size", "hits", "misses", "staleHits", "coalesced");
+    }
+
+    @Test
+    void externalUserCacheEvictsByFirstInsertion() throws Exception {
+        ExternalUserCache cache = new ExternalUserCache(2, Duration.ofSeconds(60), Duration.ofMillis(50));
+        cache.put("a", ExternalUserDto.fallback("a"));
+        Thread.sleep(60);
+        cache.evictExpired();
+        cache.put("b", ExternalUserDto.fallback("b"));
+        cache.put("a", ExternalUserDto.fallback("a"));
+        // A refresh does not queue the key again
+        cache.put("a", ExternalUserDto.fallback("a"));
+        cache.put("c", ExternalUserDto.fallback("c"));
+
+        assertThat(cache.getStale("b")).isNull();
+        assertThat(cache.getStale("a")).isNotNull();
+        assertThat(cache.getStale("c")).isNotNull();
+        cache.put("d", ExternalUserDto.fallback("d"));
+        assertThat(cache.getStale("a")).isNull();
+        assertThat(cache.getStats()).containsEntry("size", 2);
+    }
+}
@@ -0,0 +1,80 @@
+package com.circuitbreaker.circuit_breaker_patterns;
+
+import com.circuitbreaker.circuit_breaker_patterns.service.impl.*;
+import org.junit.jupiter.api.*;
+import org.reactivestreams.*;
+import reactor.core.publisher.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.stream.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class NotificationDispatcherTests {
+
+    private final NotificationDispatcher dispatcher = new NotificationDispatcher(2, 1000);
+
+    @AfterEach
+    void shutdown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void aSlowSendHoldsUpOnlyItsOwnSlot() throws Exception {
+        List<Map<String, Object>> messages = IntStream.range(0, 20)
+                .mapToObj(i -> Map.<String, Object>of("to", "user-" + i))
+                .toList();
+        CountDownLatch othersSent = new CountDownLatch(19);
+        CompletableFuture<List<Map<String, Object>>> results = dispatcher.dispatch(messages, message -> {
+            if (message.get("to").equals("user-0")) {
+                await(othersSent);
+            } else {
+                othersSent.countDown();
+            }
+            return Map.of("status", "sent");
+        });
+
+        // Sent while user-0 still blocks one of the two slots
+        assertThat(results.get(5, TimeUnit.SECONDS))
+                .extracting(result -> result.get("index"))
+                .containsExactlyElementsOf(IntStream.range(0, 20).boxed().toList());
+    }
+
+    @Test
+    void streamedSendsStartOnlyAsResultsAreTaken() throws Exception {
+        List<Map<String, Object>> messages = Collections.nCopies(100, Map.of("to", "user"));
+        AtomicInteger started = new AtomicInteger();
+        CountDownLatch firstResult = new CountDownLatch(1);
+        BaseSubscriber<Map<String, Object>> slowClient = new BaseSubscriber<>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(1);
+            }
+
+            @Override
+            protected void hookOnNext(Map<String, Object> result) {
+                firstResult.countDown();
+            }
+        };
+        dispatcher.stream(messages, message -> {
+            started.incrementAndGet();
+            return Map.of("status", "sent");
+        }).subscribe(slowClient);
+
+        assertThat(firstResult.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(200);
+        // The result taken plus the window of two waiting for demand
+        assertThat(started.get()).isLessThanOrEqualTo(3);
+        slowClient.dispose();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
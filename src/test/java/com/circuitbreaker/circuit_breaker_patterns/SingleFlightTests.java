@@ -0,0 +1,128 @@
+package com.circuitbreaker.circuit_breaker_patterns;
+
+import com.circuitbreaker.circuit_breaker_patterns.service.impl.*;
+import org.junit.jupiter.api.*;
+import reactor.core.publisher.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class SingleFlightTests {
+
+    private static final int CALLERS = 8;
+
+    private final SingleFlight<String> singleFlight = new SingleFlight<>();
+
+    @Test
+    void concurrentCallsForOneKeyShareOneExecution() throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(callers.submit(() -> singleFlight.execute("user-1", () -> {
+                    await(release);
+                    return "result-" + executions.incrementAndGet();
+                })));
+            }
+            awaitCoalesced(CALLERS - 1);
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("result-1");
+            }
+        }
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(singleFlight.getInFlightCount()).isZero();
+    }
+
+    @Test
+    void concurrentReactiveCallsForOneKeyShareOneExecution() {
+        AtomicInteger executions = new AtomicInteger();
+        Sinks.One<String> upstream = Sinks.one();
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(singleFlight.executeReactive("user-1", () -> {
+                executions.incrementAndGet();
+                return upstream.asMono();
+            }).toFuture());
+        }
+        upstream.tryEmitValue("shared");
+
+        for (CompletableFuture<String> result : results) {
+            assertThat(result.join()).isEqualTo("shared");
+        }
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(singleFlight.getCoalescedCount()).isEqualTo(CALLERS - 1);
+    }
+
+    @Test
+    void aFailureReachesEveryCallerAndFreesTheKey() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(callers.submit(() -> singleFlight.execute("user-1", () -> {
+                    await(release);
+                    throw new IllegalStateException("upstream down");
+                })));
+            }
+            awaitCoalesced(CALLERS - 1);
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                        .hasCauseInstanceOf(IllegalStateException.class);
+            }
+        }
+        assertThat(singleFlight.getInFlightCount()).isZero();
+        assertThat(singleFlight.execute("user-1", () -> "recovered")).isEqualTo("recovered");
+    }
+
+    @Test
+    void aReactiveSupplierThrowingFailsTheJoinedCallersAndFreesTheKey() throws Exception {
+        CountDownLatch joined = new CountDownLatch(1);
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> singleFlight.executeReactive("user-1", () -> {
+            await(joined);
+            throw new IllegalArgumentException("Not enough variable values available to expand 'x'");
+        }).block(Duration.ofSeconds(5)));
+        awaitInFlight();
+        CompletableFuture<String> follower = singleFlight.executeReactive("user-1", () -> Mono.just("unused")).toFuture();
+        joined.countDown();
+
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalArgumentException.class);
+        assertThat(singleFlight.getInFlightCount()).isZero();
+        assertThat(singleFlight.executeReactive("user-1", () -> Mono.just("recovered")).block(Duration.ofSeconds(5)))
+                .isEqualTo("recovered");
+    }
+
+    // Joining callers block without a signal of their own, so their arrival is polled
+    private void awaitCoalesced(long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (singleFlight.getCoalescedCount() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(singleFlight.getCoalescedCount()).isEqualTo(expected);
+    }
+
+    private void awaitInFlight() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (singleFlight.getInFlightCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(singleFlight.getInFlightCount()).isEqualTo(1);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}